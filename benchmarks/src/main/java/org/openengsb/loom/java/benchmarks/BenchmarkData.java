@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.openengsb.core.api.remote.MethodCall;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.domain.example.ExampleDomain;
+import org.openengsb.domain.example.model.ExampleRequestModel;
+import org.openengsb.domain.example.model.ExampleResponseModel;
+
+/**
+ * messages shared by the benchmarks, shaped like the calls the bridge exchanges with the OpenEngSB
+ */
+final class BenchmarkData {
+
+    static final String BROKER_URL = "vm://localhost?broker.persistent=false&broker.useJmx=false";
+
+    private BenchmarkData() {
+    }
+
+    static Method getModelMethod() {
+        try {
+            return ExampleDomain.class.getMethod("doSomethingWithModel", ExampleRequestModel.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static ExampleRequestModel createRequestModel() {
+        ExampleRequestModel model = new ExampleRequestModel();
+        model.setId(42);
+        model.setName("benchmark");
+        return model;
+    }
+
+    /**
+     * the request model the way it arrives after a plain json deserialization
+     */
+    static Map<String, Object> createRequestModelMap() {
+        Map<String, Object> model = new LinkedHashMap<String, Object>();
+        model.put("id", 42);
+        model.put("name", "benchmark");
+        return model;
+    }
+
+    static Map<String, Object> createResponseModelMap() {
+        Map<String, Object> model = new LinkedHashMap<String, Object>();
+        model.put("result", "benchmark");
+        return model;
+    }
+
+    static MethodCallMessage createCallMessage() {
+        Map<String, String> metaData = new HashMap<String, String>();
+        metaData.put("serviceFilter", "(&(objectClass=" + ExampleDomain.class.getName() + ")(service.pid=example))");
+        metaData.put("contextId", "root");
+        MethodCall call = new MethodCall(getModelMethod(), new Object[]{ createRequestModel() }, metaData);
+        call.setClasses(Arrays.asList(ExampleRequestModel.class.getName()));
+        MethodCallMessage message = new MethodCallMessage(call, "call-1");
+        message.setPrincipal("admin");
+        return message;
+    }
+
+    static MethodResultMessage createResultMessage() {
+        ExampleResponseModel model = new ExampleResponseModel();
+        model.setResult("benchmark");
+        return new MethodResultMessage(new MethodResult(model), "call-1");
+    }
+
+    /**
+     * a result whose argument still has to be converted, as {@link org.openengsb.loom.java.util.JsonUtils} sees it
+     */
+    static MethodResultMessage createRawResultMessage() {
+        MethodResult result = new MethodResult(createResponseModelMap());
+        result.setClassName(ExampleResponseModel.class.getName());
+        return new MethodResultMessage(result, "call-1");
+    }
+}
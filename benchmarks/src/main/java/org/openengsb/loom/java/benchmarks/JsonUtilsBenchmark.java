@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openengsb.core.api.remote.MethodCall;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.domain.example.model.ExampleRequestModel;
+import org.openengsb.loom.java.util.JsonUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * measures the conversion of map-shaped arguments and results into their declared types.
+ * Both conversions replace the converted values in place, so every invocation works on a fresh message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonUtilsBenchmark {
+
+    private Map<String, Object> requestModel;
+    private List<String> classes;
+    private ClassLoader classLoader;
+
+    @Setup
+    public void setUp() {
+        requestModel = BenchmarkData.createRequestModelMap();
+        classes = Arrays.asList(ExampleRequestModel.class.getName());
+        classLoader = getClass().getClassLoader();
+    }
+
+    @Benchmark
+    public MethodCall convertAllArgs() {
+        MethodCall call = new MethodCall();
+        call.setMethodName("doSomethingWithModel");
+        call.setArgs(new Object[]{ requestModel });
+        call.setClasses(classes);
+        JsonUtils.convertAllArgs(classLoader, call);
+        return call;
+    }
+
+    @Benchmark
+    public MethodResultMessage convertResult() {
+        MethodResultMessage message = BenchmarkData.createRawResultMessage();
+        JsonUtils.convertResult(classLoader, message);
+        return message;
+    }
+}
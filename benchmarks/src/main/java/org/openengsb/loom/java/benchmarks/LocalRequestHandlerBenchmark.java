@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openengsb.core.api.remote.MethodCall;
+import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.domain.example.model.ExampleRequestModel;
+import org.openengsb.loom.java.ExampleConnector;
+import org.openengsb.loom.java.LocalRequestHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * measures the dispatch of incoming calls to a local connector, including the conversion of the arguments
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LocalRequestHandlerBenchmark {
+
+    private LocalRequestHandler requestHandler;
+    private MethodCall messageCall;
+    private Map<String, Object> requestModel;
+    private List<String> modelClasses;
+
+    @Setup
+    public void setUp() {
+        requestHandler = new LocalRequestHandler(new ExampleConnector());
+        messageCall = new MethodCall();
+        messageCall.setMethodName("doSomethingWithMessage");
+        messageCall.setArgs(new Object[]{ "benchmark" });
+        messageCall.setClasses(Arrays.asList(String.class.getName()));
+        requestModel = BenchmarkData.createRequestModelMap();
+        modelClasses = Arrays.asList(ExampleRequestModel.class.getName());
+    }
+
+    /**
+     * string arguments need no conversion, so the call can be reused
+     */
+    @Benchmark
+    public MethodResult processMessage() {
+        return requestHandler.process(messageCall);
+    }
+
+    /**
+     * the model argument is converted in place, so every invocation gets a fresh call
+     */
+    @Benchmark
+    public MethodResult processModel() {
+        MethodCall call = new MethodCall();
+        call.setMethodName("doSomethingWithModel");
+        call.setArgs(new Object[]{ requestModel });
+        call.setClasses(modelClasses);
+        return requestHandler.process(call);
+    }
+}
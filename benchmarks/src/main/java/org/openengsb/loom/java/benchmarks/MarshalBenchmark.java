@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.Message;
+import javax.jms.Session;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.loom.java.codec.SmileCodec;
+import org.openengsb.loom.java.jms.JmsConfiguration;
+import org.openengsb.loom.java.jms.JmsProtocolHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * measures the conversion between bridge messages and JMS messages in both directions
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MarshalBenchmark {
+
+    @Param({ "json", "json-bytes", "smile" })
+    private String format;
+
+    private JmsProtocolHandler protocolHandler;
+    private Connection connection;
+    private Session session;
+
+    private MethodCallMessage call;
+    private MethodResultMessage result;
+    private Message callMessage;
+    private Message resultMessage;
+    private ClassLoader classLoader;
+
+    @Setup
+    public void setUp() throws Exception {
+        JmsConfiguration configuration = new JmsConfiguration();
+        if ("json-bytes".equals(format)) {
+            configuration.setUseBytesMessages(true);
+        } else if ("smile".equals(format)) {
+            configuration.setCodec(new SmileCodec());
+        }
+        protocolHandler = new JmsProtocolHandler(BenchmarkData.BROKER_URL, "marshal-benchmark", configuration);
+        connection = new ActiveMQConnectionFactory(BenchmarkData.BROKER_URL).createConnection();
+        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+
+        call = BenchmarkData.createCallMessage();
+        result = BenchmarkData.createResultMessage();
+        callMessage = protocolHandler.marshal(session, call);
+        resultMessage = protocolHandler.marshal(session, result);
+        classLoader = getClass().getClassLoader();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        session.close();
+        connection.close();
+        protocolHandler.destroy();
+    }
+
+    @Benchmark
+    public Message marshalCall() throws Exception {
+        return protocolHandler.marshal(session, call);
+    }
+
+    @Benchmark
+    public Message marshalResult() throws Exception {
+        return protocolHandler.marshal(session, result);
+    }
+
+    @Benchmark
+    public MethodCallMessage unmarshalCall() throws Exception {
+        return protocolHandler.unmarshalCall(rewind(callMessage), classLoader);
+    }
+
+    @Benchmark
+    public MethodResultMessage unmarshalResult() throws Exception {
+        return protocolHandler.unmarshalResult(rewind(resultMessage), classLoader);
+    }
+
+    /**
+     * the plain jackson path, which leaves the arguments as maps
+     */
+    @Benchmark
+    public MethodCallMessage unmarshalCallUntyped() throws Exception {
+        return protocolHandler.unmarshal(rewind(callMessage), MethodCallMessage.class);
+    }
+
+    private static Message rewind(Message message) throws Exception {
+        if (message instanceof BytesMessage) {
+            ((BytesMessage) message).reset();
+        }
+        return message;
+    }
+}
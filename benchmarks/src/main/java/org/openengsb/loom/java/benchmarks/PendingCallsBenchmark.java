@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openengsb.loom.java.util.PendingCalls;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * measures the registry of outstanding calls when many caller threads register and complete calls at once
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PendingCallsBenchmark {
+
+    @State(Scope.Thread)
+    public static class CallIds {
+        private static final AtomicLong THREADS = new AtomicLong();
+        private final String prefix = THREADS.incrementAndGet() + "-";
+        private long next;
+
+        String next() {
+            return prefix + next++;
+        }
+    }
+
+    private PendingCalls<String> pendingCalls;
+
+    @Setup
+    public void setUp() {
+        pendingCalls = new PendingCalls<String>(Integer.MAX_VALUE, 1, TimeUnit.SECONDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pendingCalls.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ListenableFuture<String> registerAndComplete(CallIds ids) {
+        return doRegisterAndComplete(ids.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ListenableFuture<String> registerAndCompleteContended(CallIds ids) {
+        return doRegisterAndComplete(ids.next());
+    }
+
+    private ListenableFuture<String> doRegisterAndComplete(String callId) {
+        ListenableFuture<String> future = pendingCalls.register(callId, 1, TimeUnit.MINUTES);
+        pendingCalls.complete(callId, callId);
+        return future;
+    }
+}
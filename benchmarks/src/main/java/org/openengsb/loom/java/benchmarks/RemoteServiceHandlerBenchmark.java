@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openengsb.connector.usernamepassword.Password;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.core.api.remote.MethodResult.ReturnType;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.domain.example.ExampleDomain;
+import org.openengsb.domain.example.model.ExampleRequestModel;
+import org.openengsb.domain.example.model.ExampleResponseModel;
+import org.openengsb.loom.java.ProxyConnectorFactory;
+import org.openengsb.loom.java.StubProtocolHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * measures the client side of a remote call: building the request from the proxy invocation and unpacking the
+ * result. The transport is replaced by a request handler that answers immediately.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RemoteServiceHandlerBenchmark {
+
+    /**
+     * answers every call with the same result without leaving the calling thread
+     */
+    private static class ImmediateProtocolHandler extends StubProtocolHandler {
+        private final MethodResult result;
+
+        ImmediateProtocolHandler(Object value) {
+            result = new MethodResult(value, ReturnType.Object);
+            result.setClassName(value.getClass().getName());
+        }
+
+        @Override
+        public MethodResultMessage process(MethodCallMessage request) {
+            return new MethodResultMessage(result, request.getCallId());
+        }
+
+        @Override
+        public String getPortId() {
+            return "benchmark";
+        }
+    }
+
+    private ExampleDomain messageProxy;
+    private ExampleDomain modelProxy;
+    private ExampleRequestModel requestModel;
+
+    @Setup
+    public void setUp() {
+        messageProxy = new ProxyConnectorFactory(new ImmediateProtocolHandler("42"), "admin",
+            new Password("password")).getRemoteProxy(ExampleDomain.class, "example");
+        ExampleResponseModel responseModel = new ExampleResponseModel();
+        responseModel.setResult("benchmark");
+        modelProxy = new ProxyConnectorFactory(new ImmediateProtocolHandler(responseModel), "admin",
+            new Password("password")).getRemoteProxy(ExampleDomain.class, "example");
+        requestModel = BenchmarkData.createRequestModel();
+    }
+
+    @Benchmark
+    public String invokeWithMessage() {
+        return messageProxy.doSomethingWithMessage("benchmark");
+    }
+
+    @Benchmark
+    public ExampleResponseModel invokeWithModel() {
+        return modelProxy.doSomethingWithModel(requestModel);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.benchmarks.load;
+
+import org.apache.activemq.broker.BrokerService;
+
+/**
+ * non-persistent ActiveMQ broker running inside the load-test process. Clients connect through vm:// unless a tcp
+ * address is given, in which case the broker also listens there, so clients in other processes can take part.
+ */
+public class EmbeddedBroker {
+
+    private static final String BROKER_NAME = "loom-load";
+
+    private final BrokerService broker = new BrokerService();
+    private final String clientUrl;
+
+    public EmbeddedBroker(String tcpUrl) throws Exception {
+        broker.setBrokerName(BROKER_NAME);
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        if (tcpUrl == null) {
+            clientUrl = "vm://" + BROKER_NAME + "?create=false";
+        } else {
+            broker.addConnector(tcpUrl);
+            clientUrl = tcpUrl;
+        }
+    }
+
+    public void start() throws Exception {
+        broker.start();
+        broker.waitUntilStarted();
+    }
+
+    public void stop() throws Exception {
+        broker.stop();
+        broker.waitUntilStopped();
+    }
+
+    public String getClientUrl() {
+        return clientUrl;
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.benchmarks.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openengsb.connector.usernamepassword.Password;
+import org.openengsb.domain.example.ExampleDomain;
+import org.openengsb.domain.example.model.ExampleRequestModel;
+import org.openengsb.loom.java.ExampleConnector;
+import org.openengsb.loom.java.ProtocolHandler;
+import org.openengsb.loom.java.ProxyConnectorFactory;
+import org.openengsb.loom.java.codec.JsonCodec;
+import org.openengsb.loom.java.codec.MessageCodec;
+import org.openengsb.loom.java.codec.SmileCodec;
+import org.openengsb.loom.java.jms.JmsConfiguration;
+import org.openengsb.loom.java.jms.JmsProtocolHandler;
+import org.openengsb.loom.java.metrics.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * runs concurrent clients against an {@link ExampleConnector} registered through the bridge and reports throughput
+ * and latency percentiles. Without --broker an embedded broker and a {@link StandInServer} are started, so no
+ * OpenEngSB is needed:
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar org.openengsb.loom.java.benchmarks.load.LoadDriver --clients 16
+ * </pre>
+ *
+ * Options (defaults in brackets): --clients [8], --duration seconds [30], --warmup seconds [5],
+ * --call model|message [model], --codec json|smile [json], --server-threads [4], --dispatch-threads [4],
+ * --connections broker connections per client side protocol handler [1], --multiplex true|false one consumer for
+ * all connectors [false], --listen tcp url for the embedded broker [none], --broker url of an external broker
+ * [embedded].
+ */
+public final class LoadDriver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadDriver.class);
+
+    private class Client implements Callable<Void> {
+        private final ExampleDomain proxy;
+        private final CountDownLatch startSignal;
+        private final long warmupEnd;
+        private final long end;
+
+        Client(ExampleDomain proxy, CountDownLatch startSignal, long warmupEnd, long end) {
+            this.proxy = proxy;
+            this.startSignal = startSignal;
+            this.warmupEnd = warmupEnd;
+            this.end = end;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            ExampleRequestModel model = new ExampleRequestModel();
+            model.setName("load");
+            startSignal.await();
+            long startTime = System.nanoTime();
+            while (startTime < end) {
+                boolean failed = false;
+                try {
+                    if (modelCalls) {
+                        proxy.doSomethingWithModel(model);
+                    } else {
+                        proxy.doSomethingWithMessage("load");
+                    }
+                } catch (RuntimeException e) {
+                    failed = true;
+                    LOGGER.warn("call failed", e);
+                }
+                long endTime = System.nanoTime();
+                if (startTime >= warmupEnd) {
+                    if (failed) {
+                        errors.incrementAndGet();
+                    } else {
+                        latencies.record(TimeUnit.NANOSECONDS.toMicros(endTime - startTime));
+                    }
+                }
+                startTime = endTime;
+            }
+            return null;
+        }
+    }
+
+    private int clients = 8;
+    private long duration = 30;
+    private long warmup = 5;
+    private boolean modelCalls = true;
+    private String codecName = "json";
+    private int serverThreads = 4;
+    private int dispatchThreads = 4;
+    private int connections = 1;
+    private boolean multiplex;
+    private String listenUrl;
+    private String brokerUrl;
+
+    private final Histogram latencies = new Histogram();
+    private final AtomicLong errors = new AtomicLong();
+
+    private LoadDriver() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadDriver driver = new LoadDriver();
+        driver.parse(args);
+        driver.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("missing value for " + args[i]);
+            }
+            String option = args[i];
+            String value = args[i + 1];
+            if ("--clients".equals(option)) {
+                clients = Integer.parseInt(value);
+            } else if ("--duration".equals(option)) {
+                duration = Long.parseLong(value);
+            } else if ("--warmup".equals(option)) {
+                warmup = Long.parseLong(value);
+            } else if ("--call".equals(option)) {
+                modelCalls = !"message".equals(value);
+            } else if ("--codec".equals(option)) {
+                codecName = value;
+            } else if ("--server-threads".equals(option)) {
+                serverThreads = Integer.parseInt(value);
+            } else if ("--dispatch-threads".equals(option)) {
+                dispatchThreads = Integer.parseInt(value);
+            } else if ("--connections".equals(option)) {
+                connections = Integer.parseInt(value);
+            } else if ("--multiplex".equals(option)) {
+                multiplex = Boolean.parseBoolean(value);
+            } else if ("--listen".equals(option)) {
+                listenUrl = value;
+            } else if ("--broker".equals(option)) {
+                brokerUrl = value;
+            } else {
+                throw new IllegalArgumentException("unknown option " + option);
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        EmbeddedBroker broker = null;
+        StandInServer server = null;
+        List<ProtocolHandler> protocolHandlers = new ArrayList<ProtocolHandler>();
+        try {
+            String url = brokerUrl;
+            if (url == null) {
+                broker = new EmbeddedBroker(listenUrl);
+                broker.start();
+                url = broker.getClientUrl();
+                server = new StandInServer(url, createCodec(), serverThreads);
+                server.start();
+            }
+
+            JmsConfiguration connectorConfiguration = createConfiguration();
+            connectorConfiguration.setDispatchThreads(dispatchThreads);
+            JmsProtocolHandler connectorSide = new JmsProtocolHandler(url, "load-connector", connectorConfiguration);
+            protocolHandlers.add(connectorSide);
+            ProxyConnectorFactory connectorFactory =
+                new ProxyConnectorFactory(connectorSide, "admin", new Password("password"));
+            String connectorId = connectorFactory.createConnector("example");
+            connectorFactory.registerConnector(connectorId, new ExampleConnector());
+
+            List<ExampleDomain> proxies = new ArrayList<ExampleDomain>();
+            for (int i = 0; i < clients; i++) {
+                JmsProtocolHandler clientSide = new JmsProtocolHandler(url, "load-client-" + i, createConfiguration());
+                protocolHandlers.add(clientSide);
+                proxies.add(new ProxyConnectorFactory(clientSide, "admin", new Password("password"))
+                    .getRemoteProxy(ExampleDomain.class, connectorId));
+            }
+            drive(proxies);
+            report();
+        } finally {
+            for (ProtocolHandler protocolHandler : protocolHandlers) {
+                protocolHandler.destroy();
+            }
+            if (server != null) {
+                server.stop();
+            }
+            if (broker != null) {
+                broker.stop();
+            }
+        }
+    }
+
+    private void drive(List<ExampleDomain> proxies) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(proxies.size());
+        CountDownLatch startSignal = new CountDownLatch(1);
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmup);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(duration);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        for (ExampleDomain proxy : proxies) {
+            results.add(executor.submit(new Client(proxy, startSignal, warmupEnd, end)));
+        }
+        LOGGER.info("running {} clients for {}s after a warmup of {}s", clients, duration, warmup);
+        startSignal.countDown();
+        try {
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void report() {
+        long calls = latencies.getCount();
+        System.out.printf("clients=%d connections=%d call=%s codec=%s duration=%ds calls=%d errors=%d "
+            + "throughput=%.1f calls/s%n", clients, connections, modelCalls ? "model" : "message", codecName, duration,
+            calls, errors.get(), (double) calls / duration);
+        System.out.println("latency (us): " + latencies.getSnapshot());
+    }
+
+    private JmsConfiguration createConfiguration() {
+        JmsConfiguration configuration = new JmsConfiguration();
+        configuration.setCodec(createCodec());
+        configuration.setConnections(connections);
+        configuration.setMultiplexConnectors(multiplex);
+        return configuration;
+    }
+
+    private MessageCodec createCodec() {
+        if ("smile".equals(codecName)) {
+            return new SmileCodec();
+        }
+        return new JsonCodec();
+    }
+}
@@ -0,0 +1,297 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.benchmarks.load;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.openengsb.core.api.ConnectorManager;
+import org.openengsb.core.api.remote.MethodCall;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.core.api.remote.MethodResult.ReturnType;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.core.api.remote.ProxyConnectorRegistry;
+import org.openengsb.loom.java.codec.MessageCodec;
+import org.openengsb.loom.java.jms.JmsProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * stands in for the OpenEngSB side of the "receive" queue, so the bridge can be load-tested without a server.
+ * {@link ConnectorManager} and {@link ProxyConnectorRegistry} are answered directly, calls to a registered
+ * connector (selected by service.pid) are forwarded to the connector's queue and its reply is relayed back to the
+ * caller. Authentication is not checked and batch envelopes are not supported.
+ */
+public class StandInServer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StandInServer.class);
+
+    private static final Pattern FILTER_PART = Pattern.compile("\\((objectClass|service\\.pid)=([^)]*)\\)");
+
+    /**
+     * where the reply to a forwarded call has to go
+     */
+    private static class Forward {
+        private final Destination replyTo;
+        private final String correlationId;
+        private final String callId;
+        private final boolean bytes;
+
+        Forward(Destination replyTo, String correlationId, String callId, boolean bytes) {
+            this.replyTo = replyTo;
+            this.correlationId = correlationId;
+            this.callId = callId;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * a consumer of the receive queue with its own reply queue for forwarded calls. JMS sessions are single
+     * threaded, so each listener only uses the session it is registered on.
+     */
+    private class Worker {
+        private final Session receiveSession;
+        private final MessageProducer receiveProducer;
+        private final Session forwardSession;
+        private final MessageProducer forwardProducer;
+        private final Queue forwardReplyQueue;
+
+        Worker(Connection connection) throws JMSException {
+            receiveSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            receiveProducer = receiveSession.createProducer(null);
+            forwardSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            forwardProducer = forwardSession.createProducer(null);
+            forwardReplyQueue = forwardSession.createTemporaryQueue();
+            receiveSession.createConsumer(receiveSession.createQueue("receive")).setMessageListener(
+                new MessageListener() {
+                    @Override
+                    public void onMessage(Message message) {
+                        handleCall(message);
+                    }
+                });
+            forwardSession.createConsumer(forwardReplyQueue).setMessageListener(new MessageListener() {
+                @Override
+                public void onMessage(Message message) {
+                    handleForwardedReply(message);
+                }
+            });
+        }
+
+        private void handleCall(Message message) {
+            try {
+                if (message.propertyExists(JmsProtocolHandler.BATCH_PROPERTY)) {
+                    LOGGER.warn("dropping batch envelope, the stand-in server only accepts single calls");
+                    return;
+                }
+                boolean bytes = message instanceof BytesMessage;
+                MethodCallMessage request = unmarshal(message, MethodCallMessage.class);
+                MethodCall call = request.getMethodCall();
+                String filter = call.getMetaData() == null ? null : call.getMetaData().get("serviceFilter");
+                String objectClass = getFilterValue(filter, "objectClass");
+                String servicePid = getFilterValue(filter, "service.pid");
+                String connectorQueue = servicePid == null ? null : connectorQueues.get(servicePid);
+                if (connectorQueue != null) {
+                    forward(message, request, connectorQueue, bytes);
+                    return;
+                }
+                MethodResult result = answer(objectClass, call);
+                Destination replyTo = message.getJMSReplyTo();
+                if (!request.isAnswer() || replyTo == null) {
+                    return;
+                }
+                Message reply = marshal(receiveSession, new MethodResultMessage(result, request.getCallId()), bytes);
+                reply.setJMSCorrelationID(message.getJMSCorrelationID());
+                receiveProducer.send(replyTo, reply);
+            } catch (Exception e) {
+                LOGGER.error("could not handle call", e);
+            }
+        }
+
+        private void forward(Message message, MethodCallMessage request, String connectorQueue, boolean bytes)
+            throws Exception {
+            boolean answer = request.isAnswer() && message.getJMSReplyTo() != null;
+            String forwardId = null;
+            if (answer) {
+                forwardId = forwardIdPrefix + forwardIds.incrementAndGet();
+                pending.put(forwardId, new Forward(message.getJMSReplyTo(), message.getJMSCorrelationID(),
+                    request.getCallId(), bytes));
+                request.setCallId(forwardId);
+            }
+            Message forwarded = marshal(receiveSession, request, bytes);
+            if (answer) {
+                forwarded.setJMSReplyTo(forwardReplyQueue);
+            }
+            try {
+                receiveProducer.send(receiveSession.createQueue(connectorQueue), forwarded);
+            } catch (JMSException e) {
+                if (forwardId != null) {
+                    pending.remove(forwardId);
+                }
+                throw e;
+            }
+        }
+
+        private void handleForwardedReply(Message message) {
+            try {
+                MethodResultMessage result = unmarshal(message, MethodResultMessage.class);
+                Forward forward = pending.remove(result.getCallId());
+                if (forward == null) {
+                    LOGGER.warn("dropping reply for unknown call {}", result.getCallId());
+                    return;
+                }
+                result.setCallId(forward.callId);
+                Message reply = marshal(forwardSession, result, forward.bytes);
+                reply.setJMSCorrelationID(forward.correlationId);
+                forwardProducer.send(forward.replyTo, reply);
+            } catch (Exception e) {
+                LOGGER.error("could not relay reply", e);
+            }
+        }
+    }
+
+    private final String brokerUrl;
+    private final ObjectMapper objectMapper;
+    private final int workerCount;
+
+    private final ConcurrentMap<String, String> connectorQueues = new ConcurrentHashMap<String, String>();
+    private final ConcurrentMap<String, Forward> pending = new ConcurrentHashMap<String, Forward>();
+    private final String forwardIdPrefix = "standin-" + UUID.randomUUID() + "-";
+    private final AtomicLong forwardIds = new AtomicLong();
+
+    private Connection connection;
+    private final List<Worker> workers = new ArrayList<Worker>();
+
+    /**
+     * @param workers number of concurrent consumers of the receive queue
+     */
+    public StandInServer(String brokerUrl, MessageCodec codec, int workers) {
+        this.brokerUrl = brokerUrl;
+        objectMapper = codec.getObjectMapper();
+        workerCount = workers;
+    }
+
+    public void start() throws JMSException {
+        connection = new ActiveMQConnectionFactory(brokerUrl).createConnection();
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new Worker(connection));
+        }
+        connection.start();
+        LOGGER.info("stand-in server listening on queue receive with {} consumers", workerCount);
+    }
+
+    public void stop() throws JMSException {
+        connection.close();
+        workers.clear();
+    }
+
+    public int getPendingForwards() {
+        return pending.size();
+    }
+
+    private MethodResult answer(String objectClass, MethodCall call) {
+        String methodName = call.getMethodName();
+        Object[] args = call.getArgs();
+        if (ConnectorManager.class.getName().equals(objectClass)) {
+            if ("create".equals(methodName)) {
+                return objectResult(UUID.randomUUID().toString());
+            }
+            if ("delete".equals(methodName)) {
+                connectorQueues.remove(args[0]);
+                return MethodResult.newVoidResult();
+            }
+        } else if (ProxyConnectorRegistry.class.getName().equals(objectClass)) {
+            if ("registerConnector".equals(methodName)) {
+                connectorQueues.put((String) args[0], getQueueName((String) args[2]));
+                return MethodResult.newVoidResult();
+            }
+            if ("unregisterConnector".equals(methodName)) {
+                connectorQueues.remove(args[0]);
+                return MethodResult.newVoidResult();
+            }
+        }
+        return new MethodResult("the stand-in server does not provide " + objectClass + "." + methodName,
+            ReturnType.Exception);
+    }
+
+    private static MethodResult objectResult(String value) {
+        MethodResult result = new MethodResult(value, ReturnType.Object);
+        result.setClassName(String.class.getName());
+        return result;
+    }
+
+    /*
+     * the bridge registers destinations like "<broker url>?<queue>"
+     */
+    private static String getQueueName(String destination) {
+        return destination.substring(destination.lastIndexOf('?') + 1);
+    }
+
+    private static String getFilterValue(String filter, String property) {
+        if (filter == null) {
+            return null;
+        }
+        Matcher matcher = FILTER_PART.matcher(filter);
+        while (matcher.find()) {
+            if (matcher.group(1).equals(property)) {
+                return matcher.group(2);
+            }
+        }
+        return null;
+    }
+
+    private <T> T unmarshal(Message message, Class<T> type) throws IOException, JMSException {
+        if (message instanceof BytesMessage) {
+            BytesMessage bytesMessage = (BytesMessage) message;
+            byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+            bytesMessage.readBytes(body);
+            return objectMapper.readValue(body, type);
+        }
+        return objectMapper.readValue(((TextMessage) message).getText(), type);
+    }
+
+    private Message marshal(Session session, Object o, boolean bytes) throws IOException, JMSException {
+        if (!bytes) {
+            return session.createTextMessage(objectMapper.writeValueAsString(o));
+        }
+        BytesMessage message = session.createBytesMessage();
+        message.writeBytes(objectMapper.writeValueAsBytes(o));
+        return message;
+    }
+}
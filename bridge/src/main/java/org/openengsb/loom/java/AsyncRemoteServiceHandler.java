@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.loom.java.metrics.OutgoingCallMetrics;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * backs proxies of an "async interface", which mirrors the methods of the service interface but returns
+ * {@link ListenableFuture}s instead of the plain results.
+ */
+class AsyncRemoteServiceHandler extends RemoteServiceHandler {
+
+    private final Map<Method, Method> serviceMethods;
+
+    AsyncRemoteServiceHandler(Class<?> asyncInterface, ServiceIdentifier serviceIdentifier,
+            RequestHandler requestHandler, String principal, CredentialsProvider credentialsProvider) {
+        super(serviceIdentifier, requestHandler, principal, credentialsProvider);
+        serviceMethods = mapServiceMethods(asyncInterface, serviceIdentifier.getServiceClass());
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Method serviceMethod = serviceMethods.get(method);
+        if (serviceMethod == null) {
+            return super.invoke(proxy, method, args);
+        }
+        if (args == null) {
+            args = new Object[0];
+        }
+        final OutgoingCallMetrics metrics = getMetrics(serviceMethod);
+        final long startTime = metrics.start();
+        ListenableFuture<Object> result;
+        try {
+            MethodCallMessage request = createRequest(serviceMethod, args);
+            if (isOneWay(serviceMethod)) {
+                result = Futures.transform(sendOneWay(request), new Function<MethodResultMessage, Object>() {
+                    @Override
+                    public Object apply(MethodResultMessage input) {
+                        return null;
+                    }
+                });
+            } else {
+                result = Futures.transform(processAsync(request), new Function<MethodResultMessage, Object>() {
+                    @Override
+                    public Object apply(MethodResultMessage input) {
+                        return handleResult(input);
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            metrics.finish(startTime, true);
+            throw e;
+        } finally {
+            metrics.sent();
+        }
+        Futures.addCallback(result, new FutureCallback<Object>() {
+            @Override
+            public void onSuccess(Object value) {
+                metrics.finish(startTime, false);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                metrics.finish(startTime, true);
+            }
+        });
+        return result;
+    }
+
+    private static Map<Method, Method> mapServiceMethods(Class<?> asyncInterface, Class<?> serviceClass) {
+        Map<Method, Method> result = new HashMap<Method, Method>();
+        for (Method method : asyncInterface.getMethods()) {
+            if (method.getDeclaringClass().equals(Object.class)) {
+                continue;
+            }
+            if (!method.getReturnType().isAssignableFrom(ListenableFuture.class)) {
+                throw new IllegalArgumentException(String.format("method %s of %s must return a ListenableFuture",
+                    method.getName(), asyncInterface.getName()));
+            }
+            try {
+                result.put(method, serviceClass.getMethod(method.getName(), method.getParameterTypes()));
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(String.format("%s has no method matching %s",
+                    serviceClass.getName(), method), e);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResultMessage;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * collects concurrent calls and hands them to the delegate as batches. A batch is sent as soon as it holds
+ * maxBatchSize calls, or maxDelay after its first call was added, whichever comes first.
+ */
+public class BatchingRequestHandler implements RequestHandler {
+
+    private static final class PendingRequest {
+        private final MethodCallMessage request;
+        private final SettableFuture<MethodResultMessage> result = SettableFuture.create();
+
+        private PendingRequest(MethodCallMessage request) {
+            this.request = request;
+        }
+    }
+
+    private final RequestHandler delegate;
+    private final int maxBatchSize;
+    private final long maxDelay;
+    private final TimeUnit unit;
+    private final ScheduledExecutorService scheduler;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private final Object lock = new Object();
+    private List<PendingRequest> pending = new ArrayList<PendingRequest>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    public BatchingRequestHandler(RequestHandler delegate, int maxBatchSize, long maxDelay, TimeUnit unit,
+            ScheduledExecutorService scheduler) {
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelay = maxDelay;
+        this.unit = unit;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public MethodResultMessage process(MethodCallMessage request) throws Exception {
+        try {
+            return processAsync(request).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public ListenableFuture<MethodResultMessage> processAsync(MethodCallMessage request) {
+        if (!request.isAnswer()) {
+            return delegate.processAsync(request);
+        }
+        PendingRequest pendingRequest = new PendingRequest(request);
+        List<PendingRequest> batch = null;
+        synchronized (lock) {
+            pending.add(pendingRequest);
+            if (pending.size() >= maxBatchSize) {
+                batch = takePending();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = scheduler.schedule(flushTask, maxDelay, unit);
+            }
+        }
+        if (batch != null) {
+            send(batch);
+        }
+        return pendingRequest.result;
+    }
+
+    @Override
+    public ListenableFuture<List<MethodResultMessage>> processBatch(List<MethodCallMessage> requests) {
+        return delegate.processBatch(requests);
+    }
+
+    /**
+     * sends all collected calls right away
+     */
+    public void flush() {
+        List<PendingRequest> batch;
+        synchronized (lock) {
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private List<PendingRequest> takePending() {
+        List<PendingRequest> batch = pending;
+        pending = new ArrayList<PendingRequest>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void send(final List<PendingRequest> batch) {
+        if (batch.size() == 1) {
+            final PendingRequest single = batch.get(0);
+            Futures.addCallback(delegate.processAsync(single.request), new FutureCallback<MethodResultMessage>() {
+                @Override
+                public void onSuccess(MethodResultMessage result) {
+                    single.result.set(result);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    single.result.setException(t);
+                }
+            });
+            return;
+        }
+        List<MethodCallMessage> requests = new ArrayList<MethodCallMessage>(batch.size());
+        for (PendingRequest pendingRequest : batch) {
+            requests.add(pendingRequest.request);
+        }
+        Futures.addCallback(delegate.processBatch(requests), new FutureCallback<List<MethodResultMessage>>() {
+            @Override
+            public void onSuccess(List<MethodResultMessage> results) {
+                if (results.size() != batch.size()) {
+                    onFailure(new IllegalStateException(String.format(
+                        "expected %d results but got %d", batch.size(), results.size())));
+                    return;
+                }
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).result.set(results.get(i));
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                for (PendingRequest pendingRequest : batch) {
+                    pendingRequest.result.setException(t);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.ClassUtils;
+import org.openengsb.core.api.remote.MethodCall;
+import org.openengsb.loom.java.metrics.OutgoingCallMetrics;
+
+/**
+ * holds everything about a call to a method that does not depend on the arguments, so that a call only has to
+ * allocate what is specific to its arguments.
+ */
+final class CallTemplate {
+
+    private final String methodName;
+    private final Class<?>[] parameterTypes;
+    private final List<String> classes;
+    private final Map<String, String> metaData;
+    private final boolean oneWay;
+    private final boolean cacheable;
+    private final OutgoingCallMetrics metrics;
+
+    CallTemplate(Method method, Map<String, String> metaData, OutgoingCallMetrics metrics) {
+        methodName = method.getName();
+        parameterTypes = ClassUtils.primitivesToWrappers(method.getParameterTypes());
+        String[] classNames = new String[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            classNames[i] = parameterTypes[i].getName();
+        }
+        classes = Collections.unmodifiableList(Arrays.asList(classNames));
+        this.metaData = metaData;
+        oneWay = method.getReturnType() == void.class && method.isAnnotationPresent(OneWay.class);
+        cacheable = method.getReturnType() != void.class && method.isAnnotationPresent(Cacheable.class);
+        this.metrics = metrics;
+    }
+
+    MethodCall createMethodCall(Object[] args) {
+        MethodCall methodCall = new MethodCall();
+        methodCall.setMethodName(methodName);
+        methodCall.setArgs(args);
+        methodCall.setClasses(getClasses(args));
+        methodCall.setMetaData(metaData);
+        return methodCall;
+    }
+
+    boolean isOneWay() {
+        return oneWay;
+    }
+
+    boolean isCacheable() {
+        return cacheable;
+    }
+
+    OutgoingCallMetrics getMetrics() {
+        return metrics;
+    }
+
+    /*
+     * the remote side needs the actual classes of the arguments, which are the declared ones in the common case;
+     * a copy is only made if an argument is of a subclass
+     */
+    private List<String> getClasses(Object[] args) {
+        List<String> result = classes;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] == null || args[i].getClass() == parameterTypes[i]) {
+                continue;
+            }
+            if (result == classes) {
+                result = new ArrayList<String>(classes);
+            }
+            result.set(i, args[i].getClass().getName());
+        }
+        return result;
+    }
+}
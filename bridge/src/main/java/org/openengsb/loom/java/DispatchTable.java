@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.ClassUtils;
+import org.apache.commons.lang.reflect.MethodUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * maps method name and argument class names of incoming calls to pre-resolved invokers of the connector's methods.
+ * The table is filled with the declared signatures of all accessible methods when it is created.
+ */
+class DispatchTable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DispatchTable.class);
+
+    static final class Invoker {
+        private final Method method;
+        private final MethodHandle handle;
+
+        private Invoker(Method method, MethodHandle handle) {
+            this.method = method;
+            this.handle = handle;
+        }
+
+        Method getMethod() {
+            return method;
+        }
+
+        Object invoke(Object target, Object[] args) throws Exception {
+            if (handle == null) {
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw (Exception) e.getTargetException();
+                }
+            }
+            try {
+                return (Object) handle.invokeExact(target, args);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        }
+    }
+
+    private static final class Key {
+        private final String methodName;
+        private final List<String> classes;
+
+        private Key(String methodName, List<String> classes) {
+            this.methodName = methodName;
+            this.classes = classes;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * methodName.hashCode() + classes.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return methodName.equals(other.methodName) && classes.equals(other.classes);
+        }
+    }
+
+    private final ConcurrentMap<Key, Invoker> invokers = new ConcurrentHashMap<Key, Invoker>();
+
+    DispatchTable(Class<?> targetClass) {
+        List<Invoker> created = new ArrayList<Invoker>();
+        for (Method method : targetClass.getMethods()) {
+            if (method.getDeclaringClass().equals(Object.class)) {
+                continue;
+            }
+            Method accessibleMethod = MethodUtils.getAccessibleMethod(method);
+            if (accessibleMethod == null) {
+                continue;
+            }
+            Invoker invoker = createInvoker(accessibleMethod);
+            created.add(invoker);
+            invokers.putIfAbsent(new Key(method.getName(), getClassNames(method.getParameterTypes())), invoker);
+        }
+        // primitive parameters usually arrive as their wrapper classes, but must not hide a real overload
+        for (Invoker invoker : created) {
+            Class<?>[] wrapperTypes = ClassUtils.primitivesToWrappers(invoker.method.getParameterTypes());
+            invokers.putIfAbsent(new Key(invoker.method.getName(), getClassNames(wrapperTypes)), invoker);
+        }
+    }
+
+    Invoker get(String methodName, List<String> classes) {
+        if (classes == null) {
+            return null;
+        }
+        return invokers.get(new Key(methodName, classes));
+    }
+
+    /**
+     * remembers the method found by a fallback lookup for later calls with the same signature
+     */
+    Invoker put(String methodName, List<String> classes, Method method) {
+        Invoker invoker = createInvoker(method);
+        if (classes != null) {
+            Invoker existing = invokers.putIfAbsent(new Key(methodName, new ArrayList<String>(classes)), invoker);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return invoker;
+    }
+
+    private static Invoker createInvoker(Method method) {
+        try {
+            MethodHandle handle = MethodHandles.publicLookup().unreflect(method);
+            handle = handle.asType(MethodType.genericMethodType(handle.type().parameterCount()));
+            handle = handle.asSpreader(Object[].class, method.getParameterTypes().length);
+            return new Invoker(method, handle);
+        } catch (IllegalAccessException e) {
+            LOGGER.debug("cannot create method handle for {}, falling back to reflection", method);
+            return new Invoker(method, null);
+        }
+    }
+
+    private static List<String> getClassNames(Class<?>[] types) {
+        List<String> result = new ArrayList<String>(types.length);
+        for (Class<?> type : types) {
+            result.add(type.getName());
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
@@ -19,7 +19,6 @@ package org.openengsb.loom.java;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 import org.apache.commons.lang.reflect.MethodUtils;
@@ -34,9 +33,15 @@ public class LocalRequestHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(LocalRequestHandler.class);
     private Object connector;
+    private DispatchTable dispatchTable;
 
     public LocalRequestHandler(Object connector) {
         this.connector = connector;
+        dispatchTable = new DispatchTable(connector.getClass());
+    }
+
+    public ClassLoader getConnectorClassLoader() {
+        return connector.getClass().getClassLoader();
     }
 
     public MethodResult process(MethodCall request) {
@@ -49,17 +54,13 @@ public class LocalRequestHandler {
 
     private MethodResult doProcess(MethodCall request) throws Exception {
         JsonUtils.convertAllArgs(connector.getClass().getClassLoader(), request);
-        Class<?>[] argTypes = getArgTypes(request);
-        LOGGER.debug("searching for method {} with args {}", request.getMethodName(), argTypes);
-        Method method = MethodUtils
-                .getMatchingAccessibleMethod(connector.getClass(), request.getMethodName(), argTypes);
-        LOGGER.info("invoking method {}", method);
-        Object result;
-        try {
-            result = method.invoke(connector, request.getArgs());
-        } catch (InvocationTargetException e) {
-            throw (Exception) e.getTargetException();
+        DispatchTable.Invoker invoker = dispatchTable.get(request.getMethodName(), request.getClasses());
+        if (invoker == null) {
+            invoker = findInvoker(request);
         }
+        Method method = invoker.getMethod();
+        LOGGER.debug("invoking method {}", method);
+        Object result = invoker.invoke(connector, request.getArgs());
         if (method.getReturnType().equals(void.class)) {
             return MethodResult.newVoidResult();
         }
@@ -67,6 +68,17 @@ public class LocalRequestHandler {
         return new MethodResult(result);
     }
 
+    private DispatchTable.Invoker findInvoker(MethodCall request) throws NoSuchMethodException {
+        Class<?>[] argTypes = getArgTypes(request);
+        LOGGER.debug("searching for method {} with args {}", request.getMethodName(), argTypes);
+        Method method = MethodUtils
+                .getMatchingAccessibleMethod(connector.getClass(), request.getMethodName(), argTypes);
+        if (method == null) {
+            throw new NoSuchMethodException(request.getMethodName());
+        }
+        return dispatchTable.put(request.getMethodName(), request.getClasses(), method);
+    }
+
     private Class<?>[] getArgTypes(MethodCall call) {
         Object[] args = call.getArgs();
         if (args == null) {
@@ -5,8 +5,19 @@ public interface ProtocolHandler {
 
     String registerRequestHandler(LocalRequestHandler requestHandler, String uuid);
 
+    /**
+     * stops serving calls to the connector registered with the given uuid and drops its metrics
+     */
+    void unregisterRequestHandler(String uuid);
+
     RequestHandler createOutgoingRequestHandler();
 
+    /**
+     * creates a request handler that binds results to the classes visible to the given class loader while reading
+     * the replies.
+     */
+    RequestHandler createOutgoingRequestHandler(ClassLoader resultClassLoader);
+
     void destroy();
 
     String getPortId();
@@ -21,6 +21,7 @@ import java.lang.reflect.Proxy;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import org.openengsb.core.api.ConnectorManager;
 import org.openengsb.core.api.ConnectorValidationFailedException;
@@ -28,17 +29,81 @@ import org.openengsb.core.api.Domain;
 import org.openengsb.core.api.model.ConnectorDescription;
 import org.openengsb.core.api.remote.ProxyConnectorRegistry;
 import org.openengsb.core.api.security.Credentials;
+import org.openengsb.loom.java.session.SessionCredentialsProvider;
+import org.openengsb.loom.java.session.SessionService;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ListenableFuture;
 
 public class ProxyConnectorFactory {
 
+    /*
+     * a proxy is identified by the interface it implements, the service it calls and the call mode
+     */
+    private static final class ProxyKey {
+        private final Class<?> proxyInterface;
+        private final ServiceIdentifier serviceIdentifier;
+        private final boolean oneWay;
+
+        private ProxyKey(Class<?> proxyInterface, ServiceIdentifier serviceIdentifier, boolean oneWay) {
+            this.proxyInterface = proxyInterface;
+            this.serviceIdentifier = serviceIdentifier;
+            this.oneWay = oneWay;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * proxyInterface.hashCode() + serviceIdentifier.hashCode()) + (oneWay ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ProxyKey)) {
+                return false;
+            }
+            ProxyKey other = (ProxyKey) obj;
+            return proxyInterface.equals(other.proxyInterface) && serviceIdentifier.equals(other.serviceIdentifier)
+                    && oneWay == other.oneWay;
+        }
+    }
+
+    private static final int MAX_CACHED_PROXIES = 1000;
+
+    /*
+     * proxies hold no per-call state, so a proxy is handed out again while it is still in use. The keys refer to
+     * service classes and arbitrary service properties, so entries are dropped once nobody holds the proxy any
+     * more, which keeps the cache from pinning bundle class loaders, and the number of entries is bounded.
+     */
+    private final ConcurrentMap<ProxyKey, Object> proxies =
+        CacheBuilder.newBuilder().maximumSize(MAX_CACHED_PROXIES).weakValues().<ProxyKey, Object>build().asMap();
+
     private ProtocolHandler remoteConfig;
     private String principal;
-    private Credentials credentials;
+    private CredentialsProvider credentialsProvider;
+    private DeliveryFailureListener deliveryFailureListener;
+    private ResultCache resultCache;
 
     public ProxyConnectorFactory(ProtocolHandler remoteConfig, String principal, Credentials credentials) {
         this.remoteConfig = remoteConfig;
         this.principal = principal;
-        this.credentials = credentials;
+        credentialsProvider = new StaticCredentialsProvider(credentials);
+    }
+
+    /**
+     * authenticates once through the remote {@link SessionService} and sends only the session token with the
+     * calls of proxies handed out afterwards. The remote side must provide the session service.
+     */
+    public void enableSessionAuthentication() {
+        setCredentialsProvider(new SessionCredentialsProvider(getRemoteProxy(SessionService.class)));
+    }
+
+    /**
+     * replaces the source of the credentials sent with each call. Proxies handed out before keep their
+     * credentials.
+     */
+    public void setCredentialsProvider(CredentialsProvider credentialsProvider) {
+        this.credentialsProvider = credentialsProvider;
+        proxies.clear();
     }
 
     public <T> T getRemoteProxy(Class<T> serviceClass) {
@@ -53,16 +118,119 @@ public class ProxyConnectorFactory {
         return getRemoteProxy(new ServiceIdentifier(serviceClass, Collections.<String, Object>emptyMap(), serviceId));
     }
     
-    @SuppressWarnings("unchecked")
+    /**
+     * creates a proxy that sends all void methods as one-way calls (see {@link OneWay})
+     */
+    public <T> T getOneWayRemoteProxy(Class<T> serviceClass) {
+        return getRemoteProxy(new ServiceIdentifier(serviceClass, Collections.<String, Object>emptyMap(), null),
+            true);
+    }
+
+    public <T> T getOneWayRemoteProxy(Class<T> serviceClass, Map<String, Object> serviceProperties) {
+        return getRemoteProxy(new ServiceIdentifier(serviceClass, serviceProperties, null), true);
+    }
+
+    public <T> T getOneWayRemoteProxy(Class<T> serviceClass, String serviceId) {
+        return getRemoteProxy(
+            new ServiceIdentifier(serviceClass, Collections.<String, Object>emptyMap(), serviceId), true);
+    }
+
     private <T> T getRemoteProxy(ServiceIdentifier serviceIdentifier) {
-        RequestHandler requestHandler = remoteConfig.createOutgoingRequestHandler();
+        return getRemoteProxy(serviceIdentifier, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T getRemoteProxy(ServiceIdentifier serviceIdentifier, boolean oneWay) {
+        ProxyKey key = new ProxyKey(serviceIdentifier.getServiceClass(), serviceIdentifier, oneWay);
+        Object proxy = proxies.get(key);
+        if (proxy == null) {
+            proxy = createRemoteProxy(serviceIdentifier, oneWay);
+            Object existing = proxies.putIfAbsent(key, proxy);
+            if (existing != null) {
+                proxy = existing;
+            }
+        }
+        return (T) proxy;
+    }
+
+    private Object createRemoteProxy(ServiceIdentifier serviceIdentifier, boolean oneWay) {
         ClassLoader classLoader = serviceIdentifier.getServiceClass().getClassLoader();
+        RequestHandler requestHandler = remoteConfig.createOutgoingRequestHandler(classLoader);
         Class<?>[] interfaces = new Class<?>[]{ serviceIdentifier.getServiceClass() };
         RemoteServiceHandler remoteRequestHandler =
-            new RemoteServiceHandler(serviceIdentifier, requestHandler, principal, credentials);
-        return (T) Proxy.newProxyInstance(classLoader, interfaces, remoteRequestHandler);
+            new RemoteServiceHandler(serviceIdentifier, requestHandler, principal, credentialsProvider);
+        remoteRequestHandler.setOneWay(oneWay);
+        remoteRequestHandler.setDeliveryFailureListener(deliveryFailureListener);
+        remoteRequestHandler.setResultCache(resultCache);
+        return Proxy.newProxyInstance(classLoader, interfaces, remoteRequestHandler);
+    }
+
+    /**
+     * creates a proxy for the given async interface. Every method of the async interface must have a counterpart
+     * with the same name and parameters in the service interface, but return a {@link ListenableFuture} of the
+     * result instead of the result itself.
+     */
+    public <A> A getAsyncRemoteProxy(Class<A> asyncInterface, Class<?> serviceClass) {
+        return getAsyncRemoteProxy(asyncInterface,
+            new ServiceIdentifier(serviceClass, Collections.<String, Object>emptyMap(), null));
+    }
+
+    public <A> A getAsyncRemoteProxy(Class<A> asyncInterface, Class<?> serviceClass,
+            Map<String, Object> serviceProperties) {
+        return getAsyncRemoteProxy(asyncInterface, new ServiceIdentifier(serviceClass, serviceProperties, null));
+    }
+
+    public <A> A getAsyncRemoteProxy(Class<A> asyncInterface, Class<?> serviceClass, String serviceId) {
+        return getAsyncRemoteProxy(asyncInterface,
+            new ServiceIdentifier(serviceClass, Collections.<String, Object>emptyMap(), serviceId));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <A> A getAsyncRemoteProxy(Class<A> asyncInterface, ServiceIdentifier serviceIdentifier) {
+        ProxyKey key = new ProxyKey(asyncInterface, serviceIdentifier, false);
+        Object proxy = proxies.get(key);
+        if (proxy == null) {
+            proxy = createAsyncRemoteProxy(asyncInterface, serviceIdentifier);
+            Object existing = proxies.putIfAbsent(key, proxy);
+            if (existing != null) {
+                proxy = existing;
+            }
+        }
+        return (A) proxy;
+    }
+
+    private Object createAsyncRemoteProxy(Class<?> asyncInterface, ServiceIdentifier serviceIdentifier) {
+        RequestHandler requestHandler =
+            remoteConfig.createOutgoingRequestHandler(serviceIdentifier.getServiceClass().getClassLoader());
+        Class<?>[] interfaces = new Class<?>[]{ asyncInterface };
+        AsyncRemoteServiceHandler remoteRequestHandler = new AsyncRemoteServiceHandler(asyncInterface,
+            serviceIdentifier, requestHandler, principal, credentialsProvider);
+        remoteRequestHandler.setDeliveryFailureListener(deliveryFailureListener);
+        return Proxy.newProxyInstance(asyncInterface.getClassLoader(), interfaces, remoteRequestHandler);
     }
   
+    /**
+     * is notified about one-way calls that could not be delivered. Proxies handed out before are dropped from the
+     * proxy cache and keep reporting to the previous listener.
+     */
+    public void setDeliveryFailureListener(DeliveryFailureListener deliveryFailureListener) {
+        this.deliveryFailureListener = deliveryFailureListener;
+        proxies.clear();
+    }
+
+    /**
+     * serves results of cacheable methods (see {@link Cacheable}) of proxies handed out afterwards from the given
+     * cache; null disables caching
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+        proxies.clear();
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
     public String createConnector(String domainType) throws ConnectorValidationFailedException {
         return createConnector(domainType, new HashMap<String, Object>());
     }
@@ -89,6 +257,7 @@ public class ProxyConnectorFactory {
 
     public void unregisterConnector(String uuid) {
         getConnectorRegistry().unregisterConnector(uuid);
+        remoteConfig.unregisterRequestHandler(uuid);
     }
 
     private ConnectorManager getConnectorManager() {
@@ -2,19 +2,31 @@ package org.openengsb.loom.java;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
-import org.openengsb.core.api.model.BeanDescription;
 import org.openengsb.core.api.remote.MethodCall;
 import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResult;
 import org.openengsb.core.api.remote.MethodResult.ReturnType;
 import org.openengsb.core.api.remote.MethodResultMessage;
-import org.openengsb.core.api.security.Credentials;
+import org.openengsb.loom.java.metrics.BridgeMetrics;
+import org.openengsb.loom.java.metrics.OutgoingCallMetrics;
 import org.openengsb.loom.java.util.JsonUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
 class RemoteServiceHandler implements InvocationHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RemoteServiceHandler.class);
@@ -23,14 +35,24 @@ class RemoteServiceHandler implements InvocationHandler {
     private RequestHandler requestHandler;
 
     private String principal;
-    private Credentials credentials;
+    private CredentialsProvider credentialsProvider;
+    private Map<String, String> metaData;
+    private final ConcurrentMap<Method, CallTemplate> templates = new ConcurrentHashMap<Method, CallTemplate>();
+
+    private boolean oneWay;
+    private DeliveryFailureListener deliveryFailureListener;
+    private ResultCache resultCache;
     
     RemoteServiceHandler(ServiceIdentifier serviceIdentifier, RequestHandler requestHandler, String principal,
-            Credentials credentials) {
+            CredentialsProvider credentialsProvider) {
         this.serviceIdentifier = serviceIdentifier;
         this.requestHandler = requestHandler;
         this.principal = principal;
-        this.credentials = credentials;
+        this.credentialsProvider = credentialsProvider;
+        Map<String, String> metaData = new HashMap<String, String>();
+        metaData.put("serviceFilter", serviceIdentifier.getServiceFilter());
+        metaData.put("contextId", "root");
+        this.metaData = Collections.unmodifiableMap(metaData);
     }
 
     @Override
@@ -41,9 +63,161 @@ class RemoteServiceHandler implements InvocationHandler {
         if(method.getDeclaringClass().equals(Object.class)){
             return method.invoke(this, args);
         }
-        MethodCall methodCall = createMethodCall(method, args);
-        MethodCallMessage wrapped = wrapMethodCall(methodCall);
-        MethodResultMessage response = requestHandler.process(wrapped);
+        CallTemplate template = getTemplate(method);
+        if (resultCache != null && resultCache.isCacheable(method, template.isCacheable())) {
+            ResultCache.Key key = resultCache.createKey(serviceIdentifier, method, args);
+            Object result = resultCache.get(key);
+            if (result == ResultCache.MISS) {
+                result = call(method, template, args);
+                resultCache.put(key, result);
+            }
+            return result;
+        }
+        return call(method, template, args);
+    }
+
+    private Object call(Method method, CallTemplate template, Object[] args) throws Exception {
+        OutgoingCallMetrics metrics = template.getMetrics();
+        long startTime = metrics.start();
+        boolean failed = true;
+        try {
+            MethodCallMessage wrapped = wrapMethodCall(template.createMethodCall(args));
+            if (isOneWay(method, template)) {
+                failed = isFailed(sendOneWay(wrapped));
+                return null;
+            }
+            MethodResultMessage response = requestHandler.process(wrapped);
+            if (isAuthenticationFailure(response) && credentialsProvider.rejected(wrapped.getCredentials())) {
+                wrapped.setCredentials(credentialsProvider.getCredentials());
+                response = requestHandler.process(wrapped);
+            }
+            Object result = handleResult(response);
+            failed = false;
+            return result;
+        } finally {
+            metrics.sent();
+            metrics.finish(startTime, failed);
+        }
+    }
+
+    /**
+     * sends the request and, if its credentials were rejected and the credentials provider supplies new ones,
+     * sends it once more
+     */
+    protected ListenableFuture<MethodResultMessage> processAsync(final MethodCallMessage request) {
+        ListenableFuture<MethodResultMessage> response = requestHandler.processAsync(request);
+        return Futures.transform(response, new AsyncFunction<MethodResultMessage, MethodResultMessage>() {
+            @Override
+            public ListenableFuture<MethodResultMessage> apply(MethodResultMessage input) {
+                if (isAuthenticationFailure(input) && credentialsProvider.rejected(request.getCredentials())) {
+                    request.setCredentials(credentialsProvider.getCredentials());
+                    return requestHandler.processAsync(request);
+                }
+                return Futures.immediateFuture(input);
+            }
+        });
+    }
+
+    private static boolean isAuthenticationFailure(MethodResultMessage response) {
+        MethodResult result = response.getResult();
+        return result.getType() == ReturnType.Exception && result.getClassName() != null
+                && result.getClassName().endsWith("AuthenticationException");
+    }
+
+    /**
+     * sends all void methods as one-way calls, not only those annotated with {@link OneWay}
+     */
+    void setOneWay(boolean oneWay) {
+        this.oneWay = oneWay;
+    }
+
+    void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    void setDeliveryFailureListener(DeliveryFailureListener deliveryFailureListener) {
+        this.deliveryFailureListener = deliveryFailureListener;
+    }
+
+    protected boolean isOneWay(Method method) {
+        return isOneWay(method, getTemplate(method));
+    }
+
+    private boolean isOneWay(Method method, CallTemplate template) {
+        if (oneWay) {
+            return method.getReturnType() == void.class;
+        }
+        return template.isOneWay();
+    }
+
+    /**
+     * sends the request without expecting a reply. The returned future completes once the request was handed to
+     * the transport.
+     */
+    protected ListenableFuture<MethodResultMessage> sendOneWay(final MethodCallMessage request) {
+        request.setAnswer(false);
+        ListenableFuture<MethodResultMessage> sent = requestHandler.processAsync(request);
+        Futures.addCallback(sent, new FutureCallback<MethodResultMessage>() {
+            @Override
+            public void onSuccess(MethodResultMessage result) {
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                LOGGER.warn("could not deliver one-way call " + request.getMethodCall().getMethodName(), t);
+                if (deliveryFailureListener != null) {
+                    deliveryFailureListener.deliveryFailed(request, t);
+                }
+            }
+        });
+        return sent;
+    }
+
+    /*
+     * a send that already failed on the calling thread counts as a failed call. Failures reported later only reach
+     * the log and the delivery failure listener.
+     */
+    private static boolean isFailed(Future<?> sent) {
+        if (!sent.isDone()) {
+            return false;
+        }
+        try {
+            sent.get();
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (CancellationException e) {
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    protected RequestHandler getRequestHandler() {
+        return requestHandler;
+    }
+
+    protected MethodCallMessage createRequest(Method method, Object[] args) {
+        return wrapMethodCall(getTemplate(method).createMethodCall(args));
+    }
+
+    protected OutgoingCallMetrics getMetrics(Method method) {
+        return getTemplate(method).getMetrics();
+    }
+
+    private CallTemplate getTemplate(Method method) {
+        CallTemplate template = templates.get(method);
+        if (template == null) {
+            OutgoingCallMetrics metrics =
+                BridgeMetrics.getDefault().getOutgoing(serviceIdentifier.getServiceClass(), method.getName());
+            template = new CallTemplate(method, metaData, metrics);
+            templates.put(method, template);
+        }
+        return template;
+    }
+
+    protected Object handleResult(MethodResultMessage response) {
         if (response.getResult().getType().equals(ReturnType.Object)) {
             JsonUtils.convertResult(serviceIdentifier.getServiceClass().getClassLoader(), response);
         }
@@ -57,16 +231,7 @@ class RemoteServiceHandler implements InvocationHandler {
     private MethodCallMessage wrapMethodCall(MethodCall methodCall) {
         MethodCallMessage methodCallRequest = new MethodCallMessage(methodCall);
         methodCallRequest.setPrincipal(principal);
-        methodCallRequest.setCredentials(BeanDescription.fromObject(credentials));
+        methodCallRequest.setCredentials(credentialsProvider.getCredentials());
         return methodCallRequest;
     }
-
-    private MethodCall createMethodCall(Method method, Object[] args) {
-        MethodCall methodCall = new MethodCall(method, args);
-        Map<String, String> metadata = new HashMap<String, String>();
-        metadata.put("serviceFilter", serviceIdentifier.getServiceFilter());
-        metadata.put("contextId", "root");
-        methodCall.setMetaData(metadata);
-        return methodCall;
-    }
 }
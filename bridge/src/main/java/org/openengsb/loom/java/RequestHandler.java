@@ -1,10 +1,25 @@
 package org.openengsb.loom.java;
 
+import java.util.List;
+
 import org.openengsb.core.api.remote.MethodCallMessage;
 import org.openengsb.core.api.remote.MethodResultMessage;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 public interface RequestHandler {
 
     MethodResultMessage process(MethodCallMessage request) throws Exception;
 
+    /**
+     * sends the request without blocking the calling thread. The returned future completes when the reply arrives
+     * or fails with the exception that prevented the call.
+     */
+    ListenableFuture<MethodResultMessage> processAsync(MethodCallMessage request);
+
+    /**
+     * sends several requests at once. The results are returned in the order of the requests.
+     */
+    ListenableFuture<List<MethodResultMessage>> processBatch(List<MethodCallMessage> requests);
+
 }
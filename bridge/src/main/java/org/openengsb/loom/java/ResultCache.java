@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * caches results of remote calls to methods annotated with {@link Cacheable} or registered with
+ * {@link #addCacheableMethod(Method)}. Entries are keyed by the called service, the method and the argument values,
+ * and are evicted when the cache is full (least recently used first) or their time to live has passed. Cached
+ * results are shared between callers, so they must not be modified. Calls through async proxies are not cached.
+ */
+public class ResultCache {
+
+    /*
+     * returned by get if there is no entry, since null is a valid result
+     */
+    static final Object MISS = new Object();
+
+    private static final Object NULL = new Object();
+
+    static final class Key {
+        private final ServiceIdentifier serviceIdentifier;
+        private final Method method;
+        private final Object[] args;
+        private final int hashCode;
+
+        private Key(ServiceIdentifier serviceIdentifier, Method method, Object[] args) {
+            this.serviceIdentifier = serviceIdentifier;
+            this.method = method;
+            this.args = args;
+            hashCode = 31 * (31 * serviceIdentifier.hashCode() + method.hashCode()) + Arrays.deepHashCode(args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && method.equals(other.method)
+                    && serviceIdentifier.equals(other.serviceIdentifier) && Arrays.deepEquals(args, other.args);
+        }
+    }
+
+    private final Cache<Key, Object> cache;
+    private final Set<Method> cacheableMethods =
+        Collections.newSetFromMap(new ConcurrentHashMap<Method, Boolean>());
+
+    public ResultCache(long maximumSize, long timeToLive, TimeUnit unit) {
+        cache = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(timeToLive, unit).recordStats()
+            .build();
+    }
+
+    /**
+     * caches results of the given method as if it was annotated with {@link Cacheable}
+     */
+    public void addCacheableMethod(Method method) {
+        cacheableMethods.add(method);
+    }
+
+    /**
+     * caches results of all methods of the service class with the given name
+     */
+    public void addCacheableMethod(Class<?> serviceClass, String methodName) {
+        boolean found = false;
+        for (Method method : serviceClass.getMethods()) {
+            if (method.getName().equals(methodName)) {
+                cacheableMethods.add(method);
+                found = true;
+            }
+        }
+        if (!found) {
+            throw new IllegalArgumentException(serviceClass.getName() + " has no method " + methodName);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * removes all results of calls to the given service class
+     */
+    public void invalidate(Class<?> serviceClass) {
+        Iterator<Key> keys = cache.asMap().keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().serviceIdentifier.getServiceClass().equals(serviceClass)) {
+                keys.remove();
+            }
+        }
+    }
+
+    /**
+     * removes all results of calls to the methods of the service class with the given name
+     */
+    public void invalidate(Class<?> serviceClass, String methodName) {
+        Iterator<Key> keys = cache.asMap().keySet().iterator();
+        while (keys.hasNext()) {
+            Key key = keys.next();
+            if (key.serviceIdentifier.getServiceClass().equals(serviceClass)
+                    && key.method.getName().equals(methodName)) {
+                keys.remove();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    boolean isCacheable(Method method, boolean annotated) {
+        return annotated || method.getReturnType() != void.class && cacheableMethods.contains(method);
+    }
+
+    Key createKey(ServiceIdentifier serviceIdentifier, Method method, Object[] args) {
+        return new Key(serviceIdentifier, method, args.clone());
+    }
+
+    Object get(Key key) {
+        Object value = cache.getIfPresent(key);
+        if (value == null) {
+            return MISS;
+        }
+        return value == NULL ? null : value;
+    }
+
+    void put(Key key, Object value) {
+        cache.put(key, value == null ? NULL : value);
+    }
+}
@@ -1,22 +1,26 @@
 package org.openengsb.loom.java;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import org.osgi.framework.Constants;
 
 class ServiceIdentifier {
-    private Class<?> serviceClass;
-    private Map<String, Object> serviceProperties;
-    private String serviceId;
+    private final Class<?> serviceClass;
+    private final Map<String, Object> serviceProperties;
+    private final String serviceId;
+    private final String serviceFilter;
     
     ServiceIdentifier(Class<?> serviceClass, Map<String, Object> serviceProperties, String serviceId) {
         if (serviceClass == null) {
             throw new NullPointerException("The service class cannot be null");
         }
         this.serviceClass = serviceClass;
-        this.serviceProperties = serviceProperties;
+        this.serviceProperties = Collections.unmodifiableMap(new LinkedHashMap<String, Object>(serviceProperties));
         this.serviceId = serviceId;
+        serviceFilter = buildServiceFilter();
     }
     
     Class<?> getServiceClass() {
@@ -24,6 +28,10 @@ class ServiceIdentifier {
     }
     
     String getServiceFilter() {
+        return serviceFilter;
+    }
+
+    private String buildServiceFilter() {
         StringBuilder sb = new StringBuilder(128);
         sb.append("(&");
         appendFilter(sb, Constants.OBJECTCLASS, serviceClass.getName());
@@ -41,4 +49,30 @@ class ServiceIdentifier {
     private void appendFilter(StringBuilder sb, String propertyName, Object propertyValue) {
         sb.append('(').append(propertyName).append('=').append(propertyValue).append(')');
     }
+
+    @Override
+    public int hashCode() {
+        int result = serviceClass.hashCode();
+        result = 31 * result + serviceProperties.hashCode();
+        result = 31 * result + (serviceId == null ? 0 : serviceId.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ServiceIdentifier)) {
+            return false;
+        }
+        ServiceIdentifier other = (ServiceIdentifier) obj;
+        return serviceClass.equals(other.serviceClass) && serviceProperties.equals(other.serviceProperties)
+                && (serviceId == null ? other.serviceId == null : serviceId.equals(other.serviceId));
+    }
+
+    @Override
+    public String toString() {
+        return serviceFilter;
+    }
 }
@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.jms;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.openengsb.loom.java.codec.JsonCodec;
+import org.openengsb.loom.java.codec.MessageCodec;
+
+/**
+ * tuning options of a {@link JmsProtocolHandler}. All timeouts are in milliseconds.
+ */
+public class JmsConfiguration {
+
+    private long callTimeout = 60000;
+    private int maxPendingCalls = 10000;
+    private long sweepInterval = 100;
+    private int sessionPoolSize = 4;
+    private int connections = 1;
+    private List<String> brokerURLs;
+    private boolean multiplexConnectors;
+    private long replyTimeToLive = 300000;
+    private Executor dispatchExecutor;
+    private int dispatchThreads;
+    private int maxQueuedCalls = 1000;
+    private int maxConcurrentCallsPerConnector;
+    private MessageCodec codec = new JsonCodec();
+    private boolean useBytesMessages;
+    private boolean batchEnvelopes;
+    private int autoBatchSize;
+    private long autoBatchDelay = 5;
+
+    public long getCallTimeout() {
+        return callTimeout;
+    }
+
+    /**
+     * time to wait for the reply to an outgoing call; 0 waits forever
+     */
+    public void setCallTimeout(long callTimeout) {
+        this.callTimeout = callTimeout;
+    }
+
+    public int getMaxPendingCalls() {
+        return maxPendingCalls;
+    }
+
+    public void setMaxPendingCalls(int maxPendingCalls) {
+        this.maxPendingCalls = maxPendingCalls;
+    }
+
+    public long getSweepInterval() {
+        return sweepInterval;
+    }
+
+    /**
+     * how often timed out and abandoned calls are removed
+     */
+    public void setSweepInterval(long sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    public int getSessionPoolSize() {
+        return sessionPoolSize;
+    }
+
+    /**
+     * number of sessions per connection used for outgoing calls, i.e. how many threads can send at the same time
+     */
+    public void setSessionPoolSize(int sessionPoolSize) {
+        this.sessionPoolSize = sessionPoolSize;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * number of broker connections, each with its own sessions. Outgoing calls are spread over the connections
+     * round-robin and registered connectors are assigned to them in turn, so more connections help when a single
+     * connection's socket and transport thread become the bottleneck.
+     */
+    public void setConnections(int connections) {
+        this.connections = connections;
+    }
+
+    public List<String> getBrokerURLs() {
+        return brokerURLs;
+    }
+
+    /**
+     * if set, the connections are opened to these URLs in turn instead of to the URL passed to the protocol
+     * handler, e.g. to spread the load over a network of brokers. All brokers must forward the "receive" queue,
+     * the reply queue and the connector queues.
+     */
+    public void setBrokerURLs(List<String> brokerURLs) {
+        this.brokerURLs = brokerURLs;
+    }
+
+    public boolean isMultiplexConnectors() {
+        return multiplexConnectors;
+    }
+
+    /**
+     * receive the calls for all registered connectors through one wildcard consumer per connection instead of one
+     * consumer per connector, so consumers and prefetch buffers do not grow with the number of connectors. The
+     * remote side addresses connectors by queue, so every connector still has a queue of its own on the broker,
+     * below a common prefix, and calls are routed by the queue they were sent to. Connector ids must not contain
+     * '.', '*' or '&gt;'.
+     */
+    public void setMultiplexConnectors(boolean multiplexConnectors) {
+        this.multiplexConnectors = multiplexConnectors;
+    }
+
+    public long getReplyTimeToLive() {
+        return replyTimeToLive;
+    }
+
+    /**
+     * time after which the broker discards replies to incoming calls that nobody consumed; 0 keeps them forever
+     */
+    public void setReplyTimeToLive(long replyTimeToLive) {
+        this.replyTimeToLive = replyTimeToLive;
+    }
+
+    public Executor getDispatchExecutor() {
+        return dispatchExecutor;
+    }
+
+    /**
+     * executor that runs incoming calls for registered connectors, e.g. a fixed thread pool or an executor
+     * starting a virtual thread per task. It is not shut down when the protocol handler is destroyed.
+     */
+    public void setDispatchExecutor(Executor dispatchExecutor) {
+        this.dispatchExecutor = dispatchExecutor;
+    }
+
+    public int getDispatchThreads() {
+        return dispatchThreads;
+    }
+
+    /**
+     * size of the thread pool created for incoming calls if no dispatch executor is set. With 0 (the default) the
+     * calls are processed one at a time on the thread delivering the JMS messages.
+     */
+    public void setDispatchThreads(int dispatchThreads) {
+        this.dispatchThreads = dispatchThreads;
+    }
+
+    public int getMaxQueuedCalls() {
+        return maxQueuedCalls;
+    }
+
+    /**
+     * maximum number of incoming calls that are queued or running. When it is reached no further messages are
+     * consumed until a call has finished.
+     */
+    public void setMaxQueuedCalls(int maxQueuedCalls) {
+        this.maxQueuedCalls = maxQueuedCalls;
+    }
+
+    public int getMaxConcurrentCallsPerConnector() {
+        return maxConcurrentCallsPerConnector;
+    }
+
+    /**
+     * maximum number of calls a single registered connector processes at the same time; 0 means no limit
+     */
+    public void setMaxConcurrentCallsPerConnector(int maxConcurrentCallsPerConnector) {
+        this.maxConcurrentCallsPerConnector = maxConcurrentCallsPerConnector;
+    }
+
+    public MessageCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * format of the messages; JSON is sent as text messages, binary formats as bytes messages. The port id is
+     * "jms-" followed by the codec's name.
+     */
+    public void setCodec(MessageCodec codec) {
+        this.codec = codec;
+    }
+
+    public boolean isUseBytesMessages() {
+        return useBytesMessages;
+    }
+
+    /**
+     * send text formats as bytes messages too. This avoids building strings for large messages, but the remote
+     * side must accept bytes messages. Replies to incoming calls always use the type of the call.
+     */
+    public void setUseBytesMessages(boolean useBytesMessages) {
+        this.useBytesMessages = useBytesMessages;
+    }
+
+    public boolean isBatchEnvelopes() {
+        return batchEnvelopes;
+    }
+
+    /**
+     * send batches of calls as a single message. Only enable this if the remote side understands batch envelopes
+     * (see {@link JmsProtocolHandler#BATCH_PROPERTY}); otherwise the calls of a batch are sent one by one without
+     * waiting for each other.
+     */
+    public void setBatchEnvelopes(boolean batchEnvelopes) {
+        this.batchEnvelopes = batchEnvelopes;
+    }
+
+    public int getAutoBatchSize() {
+        return autoBatchSize;
+    }
+
+    /**
+     * if greater than one, concurrent outgoing calls are collected into batches of at most this size
+     */
+    public void setAutoBatchSize(int autoBatchSize) {
+        this.autoBatchSize = autoBatchSize;
+    }
+
+    public long getAutoBatchDelay() {
+        return autoBatchDelay;
+    }
+
+    /**
+     * maximum time in milliseconds a call waits for others to join its batch
+     */
+    public void setAutoBatchDelay(long autoBatchDelay) {
+        this.autoBatchDelay = autoBatchDelay;
+    }
+
+}
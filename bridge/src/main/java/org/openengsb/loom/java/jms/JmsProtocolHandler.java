@@ -3,15 +3,29 @@ package org.openengsb.loom.java.jms;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.jms.BytesMessage;
 import javax.jms.Connection;
+import javax.jms.DeliveryMode;
 import javax.jms.Destination;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageConsumer;
 import javax.jms.MessageListener;
-import javax.jms.MessageProducer;
 import javax.jms.Queue;
 import javax.jms.Session;
 import javax.jms.TextMessage;
@@ -19,27 +33,92 @@ import javax.jms.TextMessage;
 import org.apache.activemq.ActiveMQConnectionFactory;
 import org.openengsb.core.api.remote.MethodCallMessage;
 import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.core.api.remote.MethodResult.ReturnType;
 import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.loom.java.BatchingRequestHandler;
 import org.openengsb.loom.java.LocalRequestHandler;
 import org.openengsb.loom.java.ProtocolHandler;
 import org.openengsb.loom.java.RequestHandler;
-import org.openengsb.loom.java.util.QueueMap;
+import org.openengsb.loom.java.codec.MessageCodec;
+import org.openengsb.loom.java.jms.SessionPool.PooledSession;
+import org.openengsb.loom.java.metrics.BridgeMetrics;
+import org.openengsb.loom.java.metrics.IncomingCallMetrics;
+import org.openengsb.loom.java.metrics.OutgoingCallMetrics;
+import org.openengsb.loom.java.trace.TracePoint;
+import org.openengsb.loom.java.trace.Tracer;
+import org.openengsb.loom.java.util.BufferPool;
+import org.openengsb.loom.java.util.BufferPool.Buffer;
+import org.openengsb.loom.java.util.CallIdGenerator;
+import org.openengsb.loom.java.util.LimitedExecutor;
+import org.openengsb.loom.java.util.PendingCalls;
+import org.openengsb.loom.java.util.TypedMessageReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 public class JmsProtocolHandler implements ProtocolHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JmsProtocolHandler.class);
+
+    /**
+     * boolean message property marking a message whose body is a list of calls or results instead of a single one
+     */
+    public static final String BATCH_PROPERTY = "loomBatch";
+
+    private static final TypeReference<List<MethodResultMessage>> RESULT_LIST =
+        new TypeReference<List<MethodResultMessage>>() {
+        };
+
     private final String applicationId;
 
+    /**
+     * a connection with a session for the connector consumers, a session for the reply consumer and a pool of
+     * sessions for sending. Each stripe has its own socket and transport thread. Replies have a session of their
+     * own, since the connector consumers block their session while dispatch is saturated, and connectors
+     * waiting for the replies of their own remote calls would otherwise never get them.
+     */
+    private static final class Stripe {
+        private final Connection connection;
+        private final Session session;
+        private final Session replySession;
+        private final SessionPool sessionPool;
+        private final String brokerURL;
+        private String connectorQueuePrefix;
+
+        Stripe(String brokerURL, int sessionPoolSize) throws JMSException {
+            this.brokerURL = brokerURL;
+            connection = new ActiveMQConnectionFactory(brokerURL).createConnection();
+            try {
+                connection.start();
+                session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                replySession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                sessionPool = new SessionPool(connection, sessionPoolSize);
+            } catch (JMSException e) {
+                connection.close();
+                throw e;
+            }
+        }
+
+        void close() throws JMSException {
+            sessionPool.close();
+            session.close();
+            replySession.close();
+            connection.stop();
+            connection.close();
+        }
+    }
+
     private class ReplyQueueListener implements MessageListener {
         @Override
         public void onMessage(Message message) {
-            LOGGER.info("got message on reply-queue: {}", message.toString());
             String jmsCorrelationID;
             try {
                 jmsCorrelationID = message.getJMSCorrelationID();
@@ -47,41 +126,251 @@ public class JmsProtocolHandler implements ProtocolHandler {
                 LOGGER.error("error processing the message", e);
                 return;
             }
-            replyMessageQueue.put(jmsCorrelationID, message);
+            LOGGER.debug("got message on reply-queue with corr-id {}", jmsCorrelationID);
+            tracer.trace(jmsCorrelationID, TracePoint.REPLY_RECEIVED, message);
+            pendingCalls.complete(jmsCorrelationID, message);
         }
     }
 
     private class JmsRemoteRequestHandler implements RequestHandler {
+        private final ClassLoader resultClassLoader;
+
+        public JmsRemoteRequestHandler(ClassLoader resultClassLoader) {
+            this.resultClassLoader = resultClassLoader;
+        }
+
         @Override
         public MethodResultMessage process(MethodCallMessage request) throws Exception {
-            Message message = marshal(request);
-            String correlationId = UUID.randomUUID().toString();
-            message.setJMSCorrelationID(correlationId);
-            Message result = sendAndReceive(message, correlationId);
-            return unmarshal(result, MethodResultMessage.class);
+            try {
+                return processAsync(request).get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public ListenableFuture<MethodResultMessage> processAsync(MethodCallMessage request) {
+            if (!request.isAnswer()) {
+                return sendOneWay(request);
+            }
+            final OutgoingCallMetrics metrics = OutgoingCallMetrics.current();
+            String correlationId = callIdGenerator.next();
+            ListenableFuture<Message> reply;
+            try {
+                reply = pendingCalls.register(correlationId, configuration.getCallTimeout(), TimeUnit.MILLISECONDS);
+            } catch (IllegalStateException e) {
+                return Futures.immediateFailedFuture(e);
+            }
+            final long sendTime = System.nanoTime();
+            try {
+                send(request, correlationId, false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pendingCalls.fail(correlationId, e);
+            } catch (Exception e) {
+                pendingCalls.fail(correlationId, e);
+            }
+            return Futures.transform(reply, new AsyncFunction<Message, MethodResultMessage>() {
+                @Override
+                public ListenableFuture<MethodResultMessage> apply(Message input) throws Exception {
+                    if (metrics != null) {
+                        metrics.recordReplyWait(System.nanoTime() - sendTime);
+                    }
+                    return Futures.immediateFuture(unmarshalResult(input, resultClassLoader));
+                }
+            });
+        }
+
+        /*
+         * without batch envelopes the calls are only pipelined, since the OpenEngSB side expects one call per
+         * message
+         */
+        @Override
+        public ListenableFuture<List<MethodResultMessage>> processBatch(List<MethodCallMessage> requests) {
+            if (!configuration.isBatchEnvelopes()) {
+                List<ListenableFuture<MethodResultMessage>> results =
+                    new ArrayList<ListenableFuture<MethodResultMessage>>(requests.size());
+                for (MethodCallMessage request : requests) {
+                    results.add(processAsync(request));
+                }
+                return Futures.allAsList(results);
+            }
+            String correlationId = callIdGenerator.next();
+            ListenableFuture<Message> reply;
+            try {
+                reply = pendingCalls.register(correlationId, configuration.getCallTimeout(), TimeUnit.MILLISECONDS);
+            } catch (IllegalStateException e) {
+                return Futures.immediateFailedFuture(e);
+            }
+            try {
+                send(requests, correlationId, true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pendingCalls.fail(correlationId, e);
+            } catch (Exception e) {
+                pendingCalls.fail(correlationId, e);
+            }
+            return Futures.transform(reply, new AsyncFunction<Message, List<MethodResultMessage>>() {
+                @Override
+                public ListenableFuture<List<MethodResultMessage>> apply(Message input) throws Exception {
+                    return Futures.immediateFuture(unmarshalResults(input, resultClassLoader));
+                }
+            });
+        }
+
+        /*
+         * one-way calls get neither a pending slot nor a reply-to, the future only reports whether the send worked
+         */
+        private ListenableFuture<MethodResultMessage> sendOneWay(MethodCallMessage request) {
+            SessionPool sessionPool = nextStripe().sessionPool;
+            PooledSession pooledSession;
+            try {
+                pooledSession = sessionPool.borrow();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Futures.immediateFailedFuture(e);
+            }
+            try {
+                Message message = marshal(pooledSession.getSession(), request);
+                LOGGER.debug("sending one-way message to queue receive");
+                tracer.trace(request.getCallId(), TracePoint.SEND, request);
+                pooledSession.getProducer().send(receiveQueue, message);
+                tracer.trace(request.getCallId(), TracePoint.BROKER_ACK);
+                return Futures.immediateFuture(null);
+            } catch (Exception e) {
+                return Futures.immediateFailedFuture(e);
+            } finally {
+                sessionPool.release(pooledSession);
+            }
+        }
+
+        private void send(Object request, String correlationId, boolean batch) throws Exception {
+            SessionPool sessionPool = nextStripe().sessionPool;
+            PooledSession pooledSession = sessionPool.borrow();
+            try {
+                Message message = marshal(pooledSession.getSession(), request);
+                message.setJMSCorrelationID(correlationId);
+                if (batch) {
+                    message.setBooleanProperty(BATCH_PROPERTY, true);
+                }
+                LOGGER.debug("sending message to queue receive and expect answer to queue: \"{}\" with corr-id {}",
+                    replyQueue, correlationId);
+                message.setJMSReplyTo(replyQueue);
+                tracer.trace(correlationId, TracePoint.SEND, request);
+                pooledSession.getProducer().send(receiveQueue, message);
+                tracer.trace(correlationId, TracePoint.BROKER_ACK);
+            } finally {
+                sessionPool.release(pooledSession);
+            }
+        }
+    }
+
+    /**
+     * consumes the calls for all connectors assigned to a stripe through a single wildcard subscription and hands
+     * them to the connector's listener
+     */
+    private class MultiplexedMessageListener implements MessageListener {
+        private final String queuePrefix;
+
+        public MultiplexedMessageListener(String queuePrefix) {
+            this.queuePrefix = queuePrefix;
+        }
+
+        @Override
+        public void onMessage(Message message) {
+            String connectorId;
+            try {
+                connectorId = getConnectorId(message);
+            } catch (JMSException e) {
+                LOGGER.error("Exception when reading message properties", e);
+                return;
+            }
+            ConnectorMessageListener listener = connectorId == null ? null : connectorListeners.get(connectorId);
+            if (listener == null) {
+                LOGGER.warn("dropping message for unknown connector {}", connectorId);
+                return;
+            }
+            listener.onMessage(message);
         }
 
-        private Message sendAndReceive(Message message, String correlationId) throws JMSException, InterruptedException {
-            LOGGER.info("sending message to queue recieve and expect answer to queue: \"{}\" with corr-id {}", replyQueue, correlationId);
-            message.setJMSReplyTo(replyQueue);
-            receiveQueueProducer.send(message);
-            return replyMessageQueue.poll(correlationId);
+        private String getConnectorId(Message message) throws JMSException {
+            Destination destination = message.getJMSDestination();
+            if (!(destination instanceof Queue)) {
+                return null;
+            }
+            String queueName = ((Queue) destination).getQueueName();
+            if (!queueName.startsWith(queuePrefix)) {
+                return null;
+            }
+            return queueName.substring(queuePrefix.length());
         }
     }
 
     private class ConnectorMessageListener implements MessageListener {
         private final LocalRequestHandler remoteRequestHandler;
+        private final Stripe stripe;
+        private final Executor executor;
+        private final IncomingCallMetrics metrics;
 
-        public ConnectorMessageListener(LocalRequestHandler remoteRequestHandler) {
+        public ConnectorMessageListener(LocalRequestHandler remoteRequestHandler, Stripe stripe, Executor executor,
+                IncomingCallMetrics metrics) {
             this.remoteRequestHandler = remoteRequestHandler;
+            this.stripe = stripe;
+            this.executor = executor;
+            this.metrics = metrics;
         }
 
         @Override
-        public void onMessage(Message message) {
-            LOGGER.info("got message for connector: {}", message.toString());
+        public void onMessage(final Message message) {
+            final long receiveTime = System.nanoTime();
+            if (executor == null) {
+                handleMessage(message, receiveTime);
+                return;
+            }
+            try {
+                dispatchPermits.acquire();
+            } catch (InterruptedException e) {
+                LOGGER.warn("interrupted while waiting for a free dispatch slot, dropping message");
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            handleMessage(message, receiveTime);
+                        } finally {
+                            dispatchPermits.release();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                dispatchPermits.release();
+                LOGGER.error("could not dispatch message", e);
+            }
+        }
+
+        private void handleMessage(Message message, long receiveTime) {
+            long startTime = System.nanoTime();
+            metrics.recordQueueWait(startTime - receiveTime);
+            LOGGER.debug("got message for connector");
+            try {
+                if (message.propertyExists(BATCH_PROPERTY) && message.getBooleanProperty(BATCH_PROPERTY)) {
+                    handleBatch(message, startTime);
+                    return;
+                }
+            } catch (JMSException e) {
+                LOGGER.error("Exception when reading message properties", e);
+                return;
+            }
             MethodCallMessage request;
             try {
-                request = unmarshal(message, MethodCallMessage.class);
+                request = unmarshalCall(message, remoteRequestHandler.getConnectorClassLoader());
+                metrics.recordUnmarshal(System.nanoTime() - startTime, getPayloadSize(message));
             } catch (JMSException e) {
                 LOGGER.error("Exception when parsing message", e);
                 return;
@@ -89,131 +378,441 @@ public class JmsProtocolHandler implements ProtocolHandler {
                 LOGGER.error("Exception when parsing message", e);
                 return;
             }
-            LOGGER.info("unmarshalled to {}", request.toString());
-            MethodResult result = remoteRequestHandler.process(request.getMethodCall());
+            tracer.trace(request.getCallId(), TracePoint.UNMARSHALLED, request);
+            MethodResult result = dispatch(request);
+            if (!request.isAnswer()) {
+                return;
+            }
             String callId = request.getCallId();
             MethodResultMessage response = new MethodResultMessage(result, callId);
             try {
-                MessageProducer producer = createProducerForQueue(callId);
-                producer.send(marshal(response));
+                sendReply(stripe, message, response, callId, metrics);
+            } catch (InterruptedException e) {
+                LOGGER.warn("interrupted while waiting for a session, dropping result");
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                LOGGER.error("error sending result", e);
+            }
+        }
+
+        private MethodResult dispatch(MethodCallMessage request) {
+            long startTime = System.nanoTime();
+            MethodResult result = remoteRequestHandler.process(request.getMethodCall());
+            metrics.recordDispatch(System.nanoTime() - startTime, result.getType() == ReturnType.Exception);
+            tracer.trace(request.getCallId(), TracePoint.DISPATCHED, result);
+            return result;
+        }
+
+        private void handleBatch(Message message, long startTime) {
+            List<MethodCallMessage> requests;
+            try {
+                requests = unmarshalCalls(message, remoteRequestHandler.getConnectorClassLoader());
+                metrics.recordUnmarshal(System.nanoTime() - startTime, getPayloadSize(message));
             } catch (JMSException e) {
-                LOGGER.error("error creating result-queue", e);
+                LOGGER.error("Exception when parsing message", e);
                 return;
             } catch (IOException e) {
-                LOGGER.error("error creating result-queue", e);
+                LOGGER.error("Exception when parsing message", e);
                 return;
             }
+            LOGGER.debug("unmarshalled batch of {} calls", requests.size());
+            List<MethodResultMessage> responses = new ArrayList<MethodResultMessage>(requests.size());
+            for (MethodCallMessage request : requests) {
+                tracer.trace(request.getCallId(), TracePoint.UNMARSHALLED, request);
+                MethodResult result = dispatch(request);
+                responses.add(new MethodResultMessage(result, request.getCallId()));
+            }
+            try {
+                sendReply(stripe, message, responses, null, metrics);
+            } catch (InterruptedException e) {
+                LOGGER.warn("interrupted while waiting for a session, dropping results");
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOGGER.error("error sending results", e);
+                return;
+            }
+            for (MethodCallMessage request : requests) {
+                tracer.trace(request.getCallId(), TracePoint.REPLY_SENT);
+            }
         }
     }
 
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
-            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
-            .enable(SerializationFeature.INDENT_OUTPUT);
+    private Stripe[] stripes;
+    private final AtomicInteger nextStripe = new AtomicInteger();
+    private final AtomicInteger nextConnectorStripe = new AtomicInteger();
 
-    private Connection connection;
-    private Session session;
+    private Executor dispatchExecutor;
+    private ExecutorService ownedDispatchExecutor;
+    private Semaphore dispatchPermits;
+    private ScheduledExecutorService batchScheduler;
 
-    private MessageProducer receiveQueueProducer;
+    private Queue receiveQueue;
     private Queue replyQueue;
-    private QueueMap<String, Message> replyMessageQueue = new QueueMap<String, Message>();
+    private String clientIdentifier;
+    private final ConcurrentMap<String, ConnectorMessageListener> connectorListeners =
+        new ConcurrentHashMap<String, ConnectorMessageListener>();
+    private final ConcurrentMap<String, MessageConsumer> connectorConsumers =
+        new ConcurrentHashMap<String, MessageConsumer>();
+    private final JmsConfiguration configuration;
+    private final MessageCodec codec;
+    private final JsonFactory textFactory;
+    private final PendingCalls<Message> pendingCalls;
+    private final CallIdGenerator callIdGenerator = new CallIdGenerator();
+    private final BufferPool buffers = new BufferPool(4096, 1024 * 1024);
+    private final Tracer tracer = Tracer.getDefault();
 
     public JmsProtocolHandler(String baseURL, String applicationId) throws JMSException {
+        this(baseURL, applicationId, new JmsConfiguration());
+    }
+
+    public JmsProtocolHandler(String baseURL, String applicationId, JmsConfiguration configuration)
+        throws JMSException {
         this.applicationId = applicationId;
+        this.configuration = configuration;
+        codec = configuration.getCodec();
+        textFactory = codec.isBinary() ? new JsonFactory() : codec.getObjectMapper().getFactory();
+        pendingCalls = new PendingCalls<Message>(configuration.getMaxPendingCalls(),
+            configuration.getSweepInterval(), TimeUnit.MILLISECONDS);
         initActiveMQ(baseURL);
         initMainQueues();
     }
 
     private void initActiveMQ(String baseURL) throws JMSException {
-        LOGGER.info("initializing domain factory for URL: {}", baseURL);
-        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(baseURL);
-        LOGGER.info("creating connection");
-        connection = connectionFactory.createConnection();
-        LOGGER.info("starting connection");
-        connection.start();
-        LOGGER.info("creating session");
-        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        List<String> brokerURLs = configuration.getBrokerURLs();
+        if (brokerURLs == null || brokerURLs.isEmpty()) {
+            brokerURLs = Collections.singletonList(baseURL);
+        }
+        LOGGER.info("creating {} connections with {} sessions each for outgoing calls",
+            configuration.getConnections(), configuration.getSessionPoolSize());
+        stripes = new Stripe[configuration.getConnections()];
+        try {
+            for (int i = 0; i < stripes.length; i++) {
+                String brokerURL = brokerURLs.get(i % brokerURLs.size());
+                LOGGER.info("connecting to {}", brokerURL);
+                stripes[i] = new Stripe(brokerURL, configuration.getSessionPoolSize());
+            }
+        } catch (JMSException e) {
+            closeStripes();
+            throw e;
+        }
+        dispatchPermits = new Semaphore(configuration.getMaxQueuedCalls());
+        if (configuration.getDispatchExecutor() != null) {
+            dispatchExecutor = configuration.getDispatchExecutor();
+        } else if (configuration.getDispatchThreads() > 0) {
+            ownedDispatchExecutor = Executors.newFixedThreadPool(configuration.getDispatchThreads(),
+                new ThreadFactoryBuilder().setNameFormat("loom-dispatch-%d").setDaemon(true).build());
+            dispatchExecutor = ownedDispatchExecutor;
+        }
+        if (configuration.getAutoBatchSize() > 1) {
+            batchScheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("loom-batch-flusher-%d").setDaemon(true).build());
+        }
     }
 
     private void initMainQueues() throws JMSException {
+        try {
+            clientIdentifier = String.format("CLIENT-%s-%s",
+                    applicationId, InetAddress.getLocalHost().toString());
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
         initReceiveQueue();
         initReplyQueue();
+        if (configuration.isMultiplexConnectors()) {
+            initConnectorQueues();
+        }
     }
 
     private void initReplyQueue() throws JMSException {
-        String identifier;
-        try {
-            identifier = String.format("CLIENT-%s-%s",
-                    applicationId, InetAddress.getLocalHost().toString());
-        } catch (UnknownHostException e) {
-            throw new IllegalStateException(e);
+        replyQueue = stripes[0].session.createQueue(clientIdentifier);
+        for (Stripe stripe : stripes) {
+            MessageConsumer consumer = stripe.replySession.createConsumer(replyQueue);
+            consumer.setMessageListener(new ReplyQueueListener());
         }
-        replyQueue = session.createQueue(identifier);
-        MessageConsumer consumer = session.createConsumer(replyQueue);
         LOGGER.info("listening on queue {}", replyQueue);
-        consumer.setMessageListener(new ReplyQueueListener());
+    }
 
+    /*
+     * the connectors of a stripe get queues below a common prefix, so one wildcard consumer receives all of them
+     */
+    private void initConnectorQueues() throws JMSException {
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[i];
+            stripe.connectorQueuePrefix = clientIdentifier + ".CONNECTORS." + i + ".";
+            Queue connectorQueues = stripe.session.createQueue(stripe.connectorQueuePrefix + ">");
+            MessageConsumer consumer = stripe.session.createConsumer(connectorQueues);
+            consumer.setMessageListener(new MultiplexedMessageListener(stripe.connectorQueuePrefix));
+            LOGGER.info("listening on queues {}", connectorQueues);
+        }
     }
 
     private void initReceiveQueue() throws JMSException {
         LOGGER.debug("creating receive-queue");
-        Destination destination = session.createQueue("receive");
-        receiveQueueProducer = session.createProducer(destination);
-        LOGGER.info("now listening on queue \"receive\"");
+        receiveQueue = stripes[0].session.createQueue("receive");
+        LOGGER.info("now sending to queue \"receive\"");
     }
 
     @Override
     public void destroy() {
-        try {
-            session.close();
-            connection.stop();
-            connection.close();
-        } catch (JMSException e) {
-            LOGGER.error("error while destroying jms-connections", e);
+        for (String uuid : connectorListeners.keySet()) {
+            unregisterRequestHandler(uuid);
+        }
+        pendingCalls.close();
+        closeStripes();
+        if (ownedDispatchExecutor != null) {
+            ownedDispatchExecutor.shutdown();
+        }
+        if (batchScheduler != null) {
+            batchScheduler.shutdown();
+        }
+    }
+
+    private void closeStripes() {
+        for (Stripe stripe : stripes) {
+            if (stripe == null) {
+                continue;
+            }
+            try {
+                stripe.close();
+            } catch (JMSException e) {
+                LOGGER.error("error while destroying jms-connections", e);
+            }
         }
     }
 
+    /*
+     * outgoing calls are spread over the stripes round-robin
+     */
+    private Stripe nextStripe() {
+        return stripes[(nextStripe.getAndIncrement() & Integer.MAX_VALUE) % stripes.length];
+    }
+
     @Override
     public RequestHandler createOutgoingRequestHandler() {
-        return new JmsRemoteRequestHandler();
+        return createOutgoingRequestHandler(null);
+    }
+
+    @Override
+    public RequestHandler createOutgoingRequestHandler(ClassLoader resultClassLoader) {
+        RequestHandler requestHandler = new JmsRemoteRequestHandler(resultClassLoader);
+        if (batchScheduler == null) {
+            return requestHandler;
+        }
+        return new BatchingRequestHandler(requestHandler, configuration.getAutoBatchSize(),
+            configuration.getAutoBatchDelay(), TimeUnit.MILLISECONDS, batchScheduler);
     }
 
+    /**
+     * in multiplexed mode no consumer is created; the connector's queue is covered by the wildcard subscription of
+     * its stripe
+     */
     @Override
     public String registerRequestHandler(LocalRequestHandler remoteRequestHandler, String uuid) {
+        Stripe stripe = stripes[(nextConnectorStripe.getAndIncrement() & Integer.MAX_VALUE) % stripes.length];
+        ConnectorMessageListener listener = new ConnectorMessageListener(remoteRequestHandler, stripe,
+            createConnectorExecutor(), BridgeMetrics.getDefault().getIncoming(uuid));
+        connectorListeners.put(uuid, listener);
+        if (configuration.isMultiplexConnectors()) {
+            return createDestination(stripe, stripe.connectorQueuePrefix + uuid);
+        }
         String queuename = uuid;
         try {
-            Queue connectorIncQueue = session.createQueue(queuename);
-            MessageConsumer createConsumer = session.createConsumer(connectorIncQueue);
-            createConsumer.setMessageListener(new ConnectorMessageListener(remoteRequestHandler));
+            Queue connectorIncQueue = stripe.session.createQueue(queuename);
+            MessageConsumer createConsumer = stripe.session.createConsumer(connectorIncQueue);
+            createConsumer.setMessageListener(listener);
+            connectorConsumers.put(uuid, createConsumer);
         } catch (JMSException e) {
+            unregisterRequestHandler(uuid);
             throw new RuntimeException(e);
         }
-        String destination = "tcp://127.0.0.1:6549?" + queuename;
-        return destination;
+        return createDestination(stripe, queuename);
+    }
+
+    /*
+     * the remote side sends the calls for a connector to the queue named after the '?' on the broker given before
+     * it, which is the broker of the connector's stripe without its connection options
+     */
+    private static String createDestination(Stripe stripe, String queueName) {
+        int options = stripe.brokerURL.indexOf('?');
+        String brokerURL = options < 0 ? stripe.brokerURL : stripe.brokerURL.substring(0, options);
+        return brokerURL + "?" + queueName;
+    }
+
+    @Override
+    public void unregisterRequestHandler(String uuid) {
+        if (connectorListeners.remove(uuid) == null) {
+            return;
+        }
+        MessageConsumer consumer = connectorConsumers.remove(uuid);
+        if (consumer != null) {
+            try {
+                consumer.close();
+            } catch (JMSException e) {
+                LOGGER.warn("could not close the consumer of connector {}", uuid, e);
+            }
+        }
+        BridgeMetrics.getDefault().removeIncoming(uuid);
+    }
+
+    private Executor createConnectorExecutor() {
+        if (dispatchExecutor == null || configuration.getMaxConcurrentCallsPerConnector() <= 0) {
+            return dispatchExecutor;
+        }
+        return new LimitedExecutor(dispatchExecutor, configuration.getMaxConcurrentCallsPerConnector());
     }
 
     @Override
     public String getPortId() {
-        return "jms-json";
+        return "jms-" + codec.getName();
     }
 
-    public MessageProducer createProducerForQueue(String callId) throws JMSException {
-        Queue createQueue = session.createQueue(callId);
-        return session.createProducer(createQueue);
+    int getPendingCallCount() {
+        return pendingCalls.size();
     }
 
-    public Message marshal(Object o) throws IOException, JMSException {
-        String text = OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(o);
-        return session.createTextMessage(text);
+    /*
+     * the reply goes out on the connection the call came in on and carries the correlation id of the call, which
+     * is what the caller's reply queue listener matches it by
+     */
+    private void sendReply(Stripe stripe, Message request, Object response, String callId,
+            IncomingCallMetrics metrics) throws Exception {
+        SessionPool sessionPool = stripe.sessionPool;
+        PooledSession pooledSession = sessionPool.borrow();
+        try {
+            Destination destination = request.getJMSReplyTo();
+            if (destination == null) {
+                if (callId == null) {
+                    LOGGER.warn("dropping reply, the request has neither a reply-to nor a call-id");
+                    return;
+                }
+                destination = pooledSession.getSession().createQueue(callId);
+            }
+            boolean bytes = request instanceof BytesMessage || codec.isBinary();
+            Message reply = marshal(pooledSession.getSession(), response, bytes, metrics);
+            reply.setJMSCorrelationID(request.getJMSCorrelationID());
+            pooledSession.getProducer().send(destination, reply, DeliveryMode.PERSISTENT, Message.DEFAULT_PRIORITY,
+                configuration.getReplyTimeToLive());
+            tracer.trace(callId, TracePoint.REPLY_SENT);
+        } finally {
+            sessionPool.release(pooledSession);
+        }
+    }
+
+    public Message marshal(Session session, Object o) throws IOException, JMSException {
+        return marshal(session, o, codec.isBinary() || configuration.isUseBytesMessages(), null);
+    }
+
+    private Message marshal(Session session, Object o, boolean bytes, IncomingCallMetrics metrics)
+        throws IOException, JMSException {
+        long startTime = System.nanoTime();
+        ObjectMapper objectMapper = codec.getObjectMapper();
+        if (!bytes) {
+            String text = objectMapper.writeValueAsString(o);
+            if (metrics != null) {
+                metrics.recordMarshal(System.nanoTime() - startTime, text.length());
+            }
+            return session.createTextMessage(text);
+        }
+        BytesMessage message = session.createBytesMessage();
+        Buffer buffer = buffers.acquire();
+        try {
+            objectMapper.writeValue(buffer, o);
+            if (metrics != null) {
+                metrics.recordMarshal(System.nanoTime() - startTime, buffer.size());
+            }
+            message.writeBytes(buffer.array(), 0, buffer.size());
+        } finally {
+            buffers.release(buffer);
+        }
+        return message;
     }
 
     public <T> T unmarshal(Message message, Class<T> type) throws IOException, JMSException {
-        String text = ((TextMessage) message).getText();
+        Buffer buffer = buffers.acquire();
         try {
-            return OBJECT_MAPPER.readValue(text, type);
-        } catch (IOException e) {
-            LOGGER.error("cannot parse: {}", text);
-            LOGGER.error("because", e);
-            throw e;
+            return codec.getObjectMapper().readValue(createParser(message, buffer), type);
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    /**
+     * reads an incoming call and binds its arguments to the classes named in the call, as seen by the given class
+     * loader
+     */
+    public MethodCallMessage unmarshalCall(Message message, ClassLoader classLoader)
+        throws IOException, JMSException {
+        Buffer buffer = buffers.acquire();
+        try {
+            return TypedMessageReader.readMethodCallMessage(codec.getObjectMapper(), createParser(message, buffer),
+                classLoader);
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    public MethodResultMessage unmarshalResult(Message message, ClassLoader classLoader)
+        throws IOException, JMSException {
+        if (classLoader == null) {
+            return unmarshal(message, MethodResultMessage.class);
+        }
+        Buffer buffer = buffers.acquire();
+        try {
+            return TypedMessageReader.readMethodResultMessage(codec.getObjectMapper(),
+                createParser(message, buffer), classLoader);
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    public List<MethodCallMessage> unmarshalCalls(Message message, ClassLoader classLoader)
+        throws IOException, JMSException {
+        Buffer buffer = buffers.acquire();
+        try {
+            return TypedMessageReader.readMethodCallMessages(codec.getObjectMapper(),
+                createParser(message, buffer), classLoader);
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    public List<MethodResultMessage> unmarshalResults(Message message, ClassLoader classLoader)
+        throws IOException, JMSException {
+        Buffer buffer = buffers.acquire();
+        try {
+            JsonParser parser = createParser(message, buffer);
+            if (classLoader == null) {
+                return codec.getObjectMapper().readValue(parser, RESULT_LIST);
+            }
+            return TypedMessageReader.readMethodResultMessages(codec.getObjectMapper(), parser, classLoader);
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    /*
+     * text sizes are counted in characters, which matches the byte count for mostly ASCII JSON
+     */
+    private static long getPayloadSize(Message message) throws JMSException {
+        if (message instanceof BytesMessage) {
+            return ((BytesMessage) message).getBodyLength();
+        }
+        return ((TextMessage) message).getText().length();
+    }
+
+    /*
+     * the parser reads from the buffer, so the buffer must not be released before parsing is done. Text messages
+     * always carry JSON, also when a binary codec is configured, so they are read with a JSON parser.
+     */
+    private JsonParser createParser(Message message, Buffer buffer) throws IOException, JMSException {
+        if (message instanceof BytesMessage) {
+            BytesMessage bytesMessage = (BytesMessage) message;
+            int length = (int) bytesMessage.getBodyLength();
+            buffer.setSize(length);
+            bytesMessage.readBytes(buffer.array(), length);
+            return codec.getObjectMapper().getFactory().createParser(buffer.array(), 0, length);
         }
+        return textFactory.createParser(((TextMessage) message).getText());
     }
 }
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.jms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JMS sessions must not be used by more than one thread at a time. This pool hands out sessions, each with an
+ * anonymous producer, to one thread at a time so that several threads can send concurrently.
+ */
+class SessionPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionPool.class);
+
+    static final class PooledSession {
+        private final Session session;
+        private final MessageProducer producer;
+
+        private PooledSession(Session session) throws JMSException {
+            this.session = session;
+            producer = session.createProducer(null);
+        }
+
+        Session getSession() {
+            return session;
+        }
+
+        MessageProducer getProducer() {
+            return producer;
+        }
+    }
+
+    private final List<PooledSession> sessions;
+    private final BlockingQueue<PooledSession> idleSessions;
+
+    SessionPool(Connection connection, int size) throws JMSException {
+        sessions = new ArrayList<PooledSession>(size);
+        idleSessions = new ArrayBlockingQueue<PooledSession>(size);
+        for (int i = 0; i < size; i++) {
+            PooledSession pooledSession =
+                new PooledSession(connection.createSession(false, Session.AUTO_ACKNOWLEDGE));
+            sessions.add(pooledSession);
+            idleSessions.add(pooledSession);
+        }
+    }
+
+    PooledSession borrow() throws InterruptedException {
+        return idleSessions.take();
+    }
+
+    void release(PooledSession session) {
+        idleSessions.offer(session);
+    }
+
+    void close() {
+        for (PooledSession pooledSession : sessions) {
+            try {
+                pooledSession.session.close();
+            } catch (JMSException e) {
+                LOGGER.error("error while closing pooled session", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.loopback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openengsb.core.api.ConnectorManager;
+import org.openengsb.core.api.model.ConnectorDescription;
+import org.openengsb.core.api.remote.MethodCall;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.core.api.remote.MethodResult.ReturnType;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.core.api.remote.ProxyConnectorRegistry;
+import org.openengsb.loom.java.LocalRequestHandler;
+import org.openengsb.loom.java.ProtocolHandler;
+import org.openengsb.loom.java.RequestHandler;
+import org.openengsb.loom.java.util.JsonUtils;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * routes calls within the JVM straight to the connectors registered with this handler, selected by the
+ * service.pid of the call, without serializing them. Calls to other services go to the services registered with
+ * {@link #registerService}; a {@link ConnectorManager} and a {@link ProxyConnectorRegistry} are provided, so
+ * connectors can be created and registered through a ProxyConnectorFactory as usual.
+ *
+ * Calls run on the calling thread, one-way calls included, and credentials are not checked.
+ */
+public class LoopbackProtocolHandler implements ProtocolHandler {
+
+    private static final Pattern FILTER_PART = Pattern.compile("\\((objectClass|service\\.pid)=([^)]*)\\)");
+
+    private class LoopbackRequestHandler implements RequestHandler {
+        @Override
+        public MethodResultMessage process(MethodCallMessage request) {
+            return dispatch(request);
+        }
+
+        @Override
+        public ListenableFuture<MethodResultMessage> processAsync(MethodCallMessage request) {
+            return Futures.immediateFuture(dispatch(request));
+        }
+
+        @Override
+        public ListenableFuture<List<MethodResultMessage>> processBatch(List<MethodCallMessage> requests) {
+            List<MethodResultMessage> results = new ArrayList<MethodResultMessage>(requests.size());
+            for (MethodCallMessage request : requests) {
+                results.add(dispatch(request));
+            }
+            return Futures.immediateFuture(results);
+        }
+    }
+
+    /**
+     * the parts of a service filter that select the target of a call
+     */
+    private static class Route {
+        private final String objectClass;
+        private final String servicePid;
+
+        Route(String objectClass, String servicePid) {
+            this.objectClass = objectClass;
+            this.servicePid = servicePid;
+        }
+    }
+
+    /**
+     * answers ConnectorManager calls, dispatched by name like any other service
+     */
+    public class LocalConnectorManager {
+        public String create(ConnectorDescription connectorDescription) {
+            return UUID.randomUUID().toString();
+        }
+
+        public void delete(String id) {
+            connectors.remove(id);
+        }
+    }
+
+    /**
+     * answers ProxyConnectorRegistry calls. The connectors themselves are registered with
+     * {@link LoopbackProtocolHandler#registerRequestHandler}.
+     */
+    public class LocalProxyConnectorRegistry {
+        public void registerConnector(String uuid, String portId, String destination) {
+        }
+
+        public void unregisterConnector(String uuid) {
+            connectors.remove(uuid);
+        }
+    }
+
+    private final boolean copyArguments;
+    private final RequestHandler requestHandler = new LoopbackRequestHandler();
+    private final ConcurrentMap<String, LocalRequestHandler> connectors =
+        new ConcurrentHashMap<String, LocalRequestHandler>();
+    private final ConcurrentMap<String, LocalRequestHandler> services =
+        new ConcurrentHashMap<String, LocalRequestHandler>();
+    private final ConcurrentMap<String, Route> routes = new ConcurrentHashMap<String, Route>();
+
+    public LoopbackProtocolHandler() {
+        this(false);
+    }
+
+    /**
+     * @param copyArguments pass deep copies of the arguments and results (see {@link JsonUtils#copy}), so caller
+     *        and connector never share mutable objects, as with a real transport. Otherwise the objects are
+     *        passed as they are.
+     */
+    public LoopbackProtocolHandler(boolean copyArguments) {
+        this.copyArguments = copyArguments;
+        registerService(ConnectorManager.class, new LocalConnectorManager());
+        registerService(ProxyConnectorRegistry.class, new LocalProxyConnectorRegistry());
+    }
+
+    /**
+     * makes the service available to calls addressed to the given interface without a service.pid
+     */
+    public void registerService(Class<?> serviceClass, Object service) {
+        services.put(serviceClass.getName(), new LocalRequestHandler(service));
+    }
+
+    @Override
+    public String registerRequestHandler(LocalRequestHandler requestHandler, String uuid) {
+        connectors.put(uuid, requestHandler);
+        return "loopback:" + uuid;
+    }
+
+    @Override
+    public void unregisterRequestHandler(String uuid) {
+        connectors.remove(uuid);
+    }
+
+    @Override
+    public RequestHandler createOutgoingRequestHandler() {
+        return requestHandler;
+    }
+
+    /**
+     * results are passed on as objects, so they need no class loader
+     */
+    @Override
+    public RequestHandler createOutgoingRequestHandler(ClassLoader resultClassLoader) {
+        return requestHandler;
+    }
+
+    @Override
+    public void destroy() {
+        connectors.clear();
+        routes.clear();
+    }
+
+    @Override
+    public String getPortId() {
+        return "loopback";
+    }
+
+    private MethodResultMessage dispatch(MethodCallMessage request) {
+        MethodCall call = request.getMethodCall();
+        LocalRequestHandler handler = findHandler(call);
+        MethodResult result;
+        if (handler == null) {
+            result = new MethodResult("no local service matches " + getServiceFilter(call), ReturnType.Exception);
+        } else {
+            result = invoke(handler, call);
+            if (result.getType() == ReturnType.Object && result.getClassName() == null && result.getArg() != null) {
+                result.setClassName(result.getArg().getClass().getName());
+            }
+            if (copyArguments && result.getType() == ReturnType.Object) {
+                try {
+                    result.setArg(JsonUtils.copy(result.getArg()));
+                } catch (IllegalArgumentException e) {
+                    result = new MethodResult("could not copy the result: " + e.getMessage(), ReturnType.Exception);
+                }
+            }
+        }
+        return new MethodResultMessage(result, request.getCallId());
+    }
+
+    private MethodResult invoke(LocalRequestHandler handler, MethodCall call) {
+        if (!copyArguments) {
+            if (call.getArgs() == null) {
+                call.setArgs(new Object[0]);
+                call.setClasses(new ArrayList<String>());
+            }
+            return handler.process(call);
+        }
+        MethodCall copiedCall;
+        try {
+            copiedCall = copy(call);
+        } catch (IllegalArgumentException e) {
+            return new MethodResult("could not copy the arguments: " + e.getMessage(), ReturnType.Exception);
+        }
+        return handler.process(copiedCall);
+    }
+
+    private LocalRequestHandler findHandler(MethodCall call) {
+        Route route = getRoute(getServiceFilter(call));
+        if (route.servicePid != null) {
+            return connectors.get(route.servicePid);
+        }
+        return route.objectClass == null ? null : services.get(route.objectClass);
+    }
+
+    /*
+     * filters are precomputed per proxy, so their routes are parsed only once
+     */
+    private Route getRoute(String filter) {
+        if (filter == null) {
+            return new Route(null, null);
+        }
+        Route route = routes.get(filter);
+        if (route == null) {
+            String objectClass = null;
+            String servicePid = null;
+            Matcher matcher = FILTER_PART.matcher(filter);
+            while (matcher.find()) {
+                if ("objectClass".equals(matcher.group(1))) {
+                    objectClass = matcher.group(2);
+                } else {
+                    servicePid = matcher.group(2);
+                }
+            }
+            route = new Route(objectClass, servicePid);
+            routes.put(filter, route);
+        }
+        return route;
+    }
+
+    private static String getServiceFilter(MethodCall call) {
+        return call.getMetaData() == null ? null : call.getMetaData().get("serviceFilter");
+    }
+
+    private static MethodCall copy(MethodCall call) {
+        Object[] args = call.getArgs();
+        Object[] copiedArgs = new Object[args == null ? 0 : args.length];
+        for (int i = 0; i < copiedArgs.length; i++) {
+            copiedArgs[i] = JsonUtils.copy(args[i]);
+        }
+        MethodCall copiedCall = new MethodCall();
+        copiedCall.setMethodName(call.getMethodName());
+        copiedCall.setArgs(copiedArgs);
+        copiedCall.setClasses(args == null ? new ArrayList<String>() : call.getClasses());
+        copiedCall.setMetaData(call.getMetaData());
+        return copiedCall;
+    }
+}
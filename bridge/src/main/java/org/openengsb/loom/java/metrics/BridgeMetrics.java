@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * registry of the metrics of outgoing calls (per service interface and method) and incoming calls (per connector).
+ * Every metrics object is also registered as MBean under the domain {@value #DOMAIN}.
+ */
+public class BridgeMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BridgeMetrics.class);
+
+    public static final String DOMAIN = "org.openengsb.loom";
+
+    private static final BridgeMetrics DEFAULT = new BridgeMetrics(ManagementFactory.getPlatformMBeanServer());
+
+    private final MBeanServer mBeanServer;
+    private final ConcurrentMap<String, OutgoingCallMetrics> outgoing =
+        new ConcurrentHashMap<String, OutgoingCallMetrics>();
+    private final ConcurrentMap<String, IncomingCallMetrics> incoming =
+        new ConcurrentHashMap<String, IncomingCallMetrics>();
+
+    /**
+     * @param mBeanServer server to register the MBeans with, or null to not register them
+     */
+    public BridgeMetrics(MBeanServer mBeanServer) {
+        this.mBeanServer = mBeanServer;
+    }
+
+    public static BridgeMetrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * returns the metrics for calls to the given method, named "interface#method"
+     */
+    public OutgoingCallMetrics getOutgoing(Class<?> serviceClass, String methodName) {
+        String name = serviceClass.getName() + "#" + methodName;
+        OutgoingCallMetrics metrics = outgoing.get(name);
+        if (metrics == null) {
+            metrics = new OutgoingCallMetrics(name);
+            OutgoingCallMetrics existing = outgoing.putIfAbsent(name, metrics);
+            if (existing != null) {
+                return existing;
+            }
+            register("OutgoingCalls", name, metrics);
+        }
+        return metrics;
+    }
+
+    public IncomingCallMetrics getIncoming(String connectorId) {
+        IncomingCallMetrics metrics = incoming.get(connectorId);
+        if (metrics == null) {
+            metrics = new IncomingCallMetrics(connectorId);
+            IncomingCallMetrics existing = incoming.putIfAbsent(connectorId, metrics);
+            if (existing != null) {
+                return existing;
+            }
+            register("IncomingCalls", connectorId, metrics);
+        }
+        return metrics;
+    }
+
+    /**
+     * drops the metrics of a connector that is no longer served
+     */
+    public void removeIncoming(String connectorId) {
+        if (incoming.remove(connectorId) != null) {
+            unregister("IncomingCalls", connectorId);
+        }
+    }
+
+    public Map<String, OutgoingCallMetrics> getOutgoingCalls() {
+        return Collections.unmodifiableMap(outgoing);
+    }
+
+    public Map<String, IncomingCallMetrics> getIncomingCalls() {
+        return Collections.unmodifiableMap(incoming);
+    }
+
+    private void register(String type, String name, Object mBean) {
+        if (mBeanServer == null) {
+            return;
+        }
+        try {
+            mBeanServer.registerMBean(mBean, createObjectName(type, name));
+        } catch (JMException e) {
+            LOGGER.warn("could not register metrics for {}", name, e);
+        }
+    }
+
+    private void unregister(String type, String name) {
+        if (mBeanServer == null) {
+            return;
+        }
+        try {
+            mBeanServer.unregisterMBean(createObjectName(type, name));
+        } catch (JMException e) {
+            LOGGER.warn("could not unregister metrics for {}", name, e);
+        }
+    }
+
+    private static ObjectName createObjectName(String type, String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * metrics of the calls received for one connector
+ */
+public class IncomingCallMetrics implements IncomingCallMetricsMXBean {
+
+    private final String connectorId;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final Histogram queueWait = new Histogram();
+    private final Histogram unmarshalTime = new Histogram();
+    private final Histogram dispatchTime = new Histogram();
+    private final Histogram marshalTime = new Histogram();
+    private final Histogram requestBytes = new Histogram();
+    private final Histogram replyBytes = new Histogram();
+
+    IncomingCallMetrics(String connectorId) {
+        this.connectorId = connectorId;
+    }
+
+    public String getConnectorId() {
+        return connectorId;
+    }
+
+    public void recordQueueWait(long nanos) {
+        queueWait.record(nanos);
+    }
+
+    public void recordUnmarshal(long nanos, long bytes) {
+        unmarshalTime.record(nanos);
+        requestBytes.record(bytes);
+    }
+
+    public void recordDispatch(long nanos, boolean failed) {
+        calls.incrementAndGet();
+        if (failed) {
+            errors.incrementAndGet();
+        }
+        dispatchTime.record(nanos);
+    }
+
+    public void recordMarshal(long nanos, long bytes) {
+        marshalTime.record(nanos);
+        replyBytes.record(bytes);
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public HistogramSnapshot getQueueWait() {
+        return queueWait.getSnapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getUnmarshalTime() {
+        return unmarshalTime.getSnapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getDispatchTime() {
+        return dispatchTime.getSnapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getMarshalTime() {
+        return marshalTime.getSnapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getRequestBytes() {
+        return requestBytes.getSnapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getReplyBytes() {
+        return replyBytes.getSnapshot();
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * metrics of the calls made through remote proxies to one method of a service interface
+ */
+public class OutgoingCallMetrics implements OutgoingCallMetricsMXBean {
+
+    /**
+     * a call being started on a thread, and the call it interrupted. Proxies may make calls of their own while
+     * preparing one, e.g. to open a session for its credentials.
+     */
+    private static final class CurrentCall {
+        private final OutgoingCallMetrics metrics;
+        private final CurrentCall previous;
+
+        CurrentCall(OutgoingCallMetrics metrics, CurrentCall previous) {
+            this.metrics = metrics;
+            this.previous = previous;
+        }
+    }
+
+    /*
+     * lets transports attribute reply wait times to the call that is being started on this thread
+     */
+    private static final ThreadLocal<CurrentCall> CURRENT = new ThreadLocal<CurrentCall>();
+
+    private final String name;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Histogram latency = new Histogram();
+    private final Histogram replyWait = new Histogram();
+
+    OutgoingCallMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * marks the start of a call and makes these metrics current for the calling thread until {@link #sent()}.
+     * Returns the start time to pass to {@link #finish(long, boolean)}.
+     */
+    public long start() {
+        inFlight.incrementAndGet();
+        CURRENT.set(new CurrentCall(this, CURRENT.get()));
+        return System.nanoTime();
+    }
+
+    /**
+     * marks that the call was handed to the transport; the call that was current before {@link #start()} becomes
+     * current again
+     */
+    public void sent() {
+        CurrentCall current = CURRENT.get();
+        if (current == null || current.metrics != this) {
+            return;
+        }
+        if (current.previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(current.previous);
+        }
+    }
+
+    public void finish(long startTime, boolean failed) {
+        inFlight.decrementAndGet();
+        calls.incrementAndGet();
+        if (failed) {
+            errors.incrementAndGet();
+        }
+        latency.record(System.nanoTime() - startTime);
+    }
+
+    public void recordReplyWait(long nanos) {
+        replyWait.record(nanos);
+    }
+
+    /**
+     * returns the metrics of the call currently being sent by this thread, or null
+     */
+    public static OutgoingCallMetrics current() {
+        CurrentCall current = CURRENT.get();
+        return current == null ? null : current.metrics;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.get();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public HistogramSnapshot getLatency() {
+        return latency.getSnapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getReplyWait() {
+        return replyWait.getSnapshot();
+    }
+}
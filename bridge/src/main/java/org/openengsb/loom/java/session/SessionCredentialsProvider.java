@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.session;
+
+import org.openengsb.core.api.model.BeanDescription;
+import org.openengsb.loom.java.CredentialsProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * authenticates once with the {@link SessionService} and then sends only the session token. A new session is
+ * opened when the token is about to expire or was rejected by the remote side.
+ */
+public class SessionCredentialsProvider implements CredentialsProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionCredentialsProvider.class);
+
+    private static final class Session {
+        private final SessionTicket ticket;
+        private final BeanDescription credentials;
+
+        private Session(SessionTicket ticket) {
+            this.ticket = ticket;
+            credentials = BeanDescription.fromObject(new SessionToken(ticket.getToken()));
+        }
+    }
+
+    private final SessionService sessionService;
+    private final long refreshMargin;
+    private volatile Session session;
+
+    public SessionCredentialsProvider(SessionService sessionService) {
+        this(sessionService, 5000);
+    }
+
+    /**
+     * @param refreshMargin time in milliseconds before the expiry of a token at which a new session is opened
+     */
+    public SessionCredentialsProvider(SessionService sessionService, long refreshMargin) {
+        this.sessionService = sessionService;
+        this.refreshMargin = refreshMargin;
+    }
+
+    @Override
+    public BeanDescription getCredentials() {
+        Session current = session;
+        if (!isValid(current)) {
+            current = renew(current);
+        }
+        return current.credentials;
+    }
+
+    @Override
+    public synchronized boolean rejected(BeanDescription credentials) {
+        if (session != null && session.credentials == credentials) {
+            LOGGER.info("session token was rejected, opening a new session");
+            session = null;
+        }
+        return true;
+    }
+
+    /**
+     * closes the current session, if any. The next call opens a new one.
+     */
+    public synchronized void close() {
+        if (session != null) {
+            String token = session.ticket.getToken();
+            session = null;
+            sessionService.closeSession(token);
+        }
+    }
+
+    private synchronized Session renew(Session stale) {
+        if (session != stale && isValid(session)) {
+            return session;
+        }
+        LOGGER.debug("opening new session");
+        session = new Session(sessionService.openSession());
+        return session;
+    }
+
+    private boolean isValid(Session current) {
+        return current != null && current.ticket.getExpiresAt() - refreshMargin > System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.shm;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * spins for a number of attempts, then parks for a time that doubles on every attempt up to a maximum. Bursts of
+ * calls are picked up without delay, while an idle connection costs little CPU.
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+
+    private final int spins;
+    private final long minParkNanos;
+    private final long maxParkNanos;
+
+    public ParkingWaitStrategy() {
+        this(1000, 1, 1000, TimeUnit.MICROSECONDS);
+    }
+
+    public ParkingWaitStrategy(int spins, long minPark, long maxPark, TimeUnit unit) {
+        this.spins = spins;
+        minParkNanos = unit.toNanos(minPark);
+        maxParkNanos = unit.toNanos(maxPark);
+    }
+
+    @Override
+    public void idle(int idleCount) {
+        if (idleCount < spins) {
+            return;
+        }
+        int doublings = Math.min(idleCount - spins, 62);
+        long parkNanos = minParkNanos << doublings;
+        if (parkNanos <= 0 || parkNanos > maxParkNanos || parkNanos >> doublings != minParkNanos) {
+            parkNanos = maxParkNanos;
+        }
+        LockSupport.parkNanos(parkNanos);
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.shm;
+
+/**
+ * a message read from a {@link RingBuffer}. Calls carry the id of the connector they are addressed to as target,
+ * results the correlation id of their call.
+ */
+final class Record {
+
+    static final byte CALL = 1;
+    static final byte ONE_WAY_CALL = 2;
+    static final byte RESULT = 3;
+
+    private final byte type;
+    private final long correlationId;
+    private final String target;
+    private final byte[] payload;
+
+    Record(byte type, long correlationId, String target, byte[] payload) {
+        this.type = type;
+        this.correlationId = correlationId;
+        this.target = target;
+        this.payload = payload;
+    }
+
+    byte getType() {
+        return type;
+    }
+
+    long getCorrelationId() {
+        return correlationId;
+    }
+
+    String getTarget() {
+        return target;
+    }
+
+    byte[] getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.shm;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * a single-producer/single-consumer queue of {@link Record}s in a region of shared memory. The region starts with
+ * the producer's and the consumer's position, each on a cache line of its own, followed by the data area whose
+ * size is a power of two. Positions only grow and are mapped into the data area by masking.
+ * <p>
+ * Every record starts with its 4 byte length, followed by the type, the correlation id, the length of the UTF-8
+ * encoded target, the target and the payload. Records are 8 byte aligned. A record that does not fit before the
+ * end of the data area is preceded by a negative length telling the consumer to skip to the start.
+ * <p>
+ * Java 7 has no fences for mapped memory. A position is stored before a volatile write and loaded before a volatile
+ * read, which keeps the JIT from moving the record stores below the volatile write or the record loads above the
+ * volatile read. That the record contents become visible before the position they are published with relies on
+ * the hardware not reordering stores with stores or loads with loads, so the ring is only safe on x86 (TSO), and
+ * {@link SharedMemoryProtocolHandler} refuses to run anywhere else.
+ */
+final class RingBuffer {
+
+    static final int HEADER_SIZE = 128;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    static final byte[] NO_TARGET = new byte[0];
+
+    private static final int TAIL_OFFSET = 0;
+    private static final int HEAD_OFFSET = 64;
+    private static final int RECORD_HEADER_SIZE = 4 + 1 + 8 + 2;
+    private static final int ALIGNMENT = 8;
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+
+    private long tail;
+    private long head;
+    private long cachedHead;
+    private long cachedTail;
+
+    @SuppressWarnings("unused")
+    private volatile int fence;
+
+    /**
+     * the buffer covers the header and the data area; its positions are read from it, so a ring can be reopened
+     */
+    RingBuffer(ByteBuffer buffer) {
+        this.buffer = buffer;
+        capacity = buffer.capacity() - HEADER_SIZE;
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("the data area must be a power of two, not " + capacity);
+        }
+        mask = capacity - 1;
+        tail = buffer.getLong(TAIL_OFFSET);
+        head = buffer.getLong(HEAD_OFFSET);
+        cachedHead = head;
+        cachedTail = tail;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * the largest payload a record with the given target can carry. Records may use at most half of the data area
+     * so that a record never has to wait for more space than the ring has.
+     */
+    int getMaxPayloadLength(byte[] target) {
+        return capacity / 2 - RECORD_HEADER_SIZE - target.length;
+    }
+
+    /**
+     * appends a record, returning false if the ring does not have enough free space. Must only be called by the
+     * producer.
+     */
+    boolean offer(byte type, long correlationId, byte[] target, byte[] payload, int payloadLength) {
+        if (payloadLength > getMaxPayloadLength(target)) {
+            throw new IllegalArgumentException("a payload of " + payloadLength + " bytes does not fit the ring");
+        }
+        int length = RECORD_HEADER_SIZE + target.length + payloadLength;
+        int recordSize = align(length);
+        int index = (int) (tail & mask);
+        int padding = capacity - index < recordSize ? capacity - index : 0;
+        if (tail + padding + recordSize - cachedHead > capacity) {
+            cachedHead = readPosition(HEAD_OFFSET);
+            if (tail + padding + recordSize - cachedHead > capacity) {
+                return false;
+            }
+        }
+        if (padding > 0) {
+            buffer.putInt(HEADER_SIZE + index, -padding);
+            index = 0;
+        }
+        ByteBuffer out = buffer.duplicate();
+        out.position(HEADER_SIZE + index);
+        out.putInt(length);
+        out.put(type);
+        out.putLong(correlationId);
+        out.putShort((short) target.length);
+        out.put(target);
+        out.put(payload, 0, payloadLength);
+        tail += padding + recordSize;
+        writePosition(TAIL_OFFSET, tail);
+        return true;
+    }
+
+    /**
+     * removes the next record, returning null if the ring is empty. Must only be called by the consumer.
+     */
+    Record poll() {
+        if (head == cachedTail) {
+            cachedTail = readPosition(TAIL_OFFSET);
+            if (head == cachedTail) {
+                return null;
+            }
+        }
+        int index = (int) (head & mask);
+        int length = buffer.getInt(HEADER_SIZE + index);
+        if (length < 0) {
+            head -= length;
+            index = 0;
+            length = buffer.getInt(HEADER_SIZE);
+        }
+        ByteBuffer in = buffer.duplicate();
+        in.position(HEADER_SIZE + index + 4);
+        byte type = in.get();
+        long correlationId = in.getLong();
+        byte[] target = new byte[in.getShort() & 0xffff];
+        in.get(target);
+        byte[] payload = new byte[length - RECORD_HEADER_SIZE - target.length];
+        in.get(payload);
+        head += align(length);
+        writePosition(HEAD_OFFSET, head);
+        return new Record(type, correlationId, new String(target, UTF8), payload);
+    }
+
+    private long readPosition(int offset) {
+        long position = buffer.getLong(offset);
+        int unused = fence;
+        return position;
+    }
+
+    private void writePosition(int offset, long position) {
+        buffer.putLong(offset, position);
+        fence = 0;
+    }
+
+    private static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.shm;
+
+import java.util.concurrent.Executor;
+
+import org.openengsb.loom.java.codec.JsonCodec;
+import org.openengsb.loom.java.codec.MessageCodec;
+
+/**
+ * tuning options of a {@link SharedMemoryProtocolHandler}. All timeouts are in milliseconds.
+ */
+public class SharedMemoryConfiguration {
+
+    private int ringCapacity = 4 * 1024 * 1024;
+    private WaitStrategy readWaitStrategy = new ParkingWaitStrategy();
+    private WaitStrategy writeWaitStrategy = new ParkingWaitStrategy();
+    private long writeTimeout = 5000;
+    private long callTimeout = 60000;
+    private int maxPendingCalls = 10000;
+    private long sweepInterval = 100;
+    private Executor dispatchExecutor;
+    private int dispatchThreads = 4;
+    private MessageCodec codec = new JsonCodec();
+
+    public int getRingCapacity() {
+        return ringCapacity;
+    }
+
+    /**
+     * size in bytes of each ring, a power of two. Only used when the file is created; a message may take at most
+     * half of a ring.
+     */
+    public void setRingCapacity(int ringCapacity) {
+        this.ringCapacity = ringCapacity;
+    }
+
+    public WaitStrategy getReadWaitStrategy() {
+        return readWaitStrategy;
+    }
+
+    /**
+     * how the reader thread waits for incoming messages
+     */
+    public void setReadWaitStrategy(WaitStrategy readWaitStrategy) {
+        this.readWaitStrategy = readWaitStrategy;
+    }
+
+    public WaitStrategy getWriteWaitStrategy() {
+        return writeWaitStrategy;
+    }
+
+    /**
+     * how senders wait for space while the outgoing ring is full
+     */
+    public void setWriteWaitStrategy(WaitStrategy writeWaitStrategy) {
+        this.writeWaitStrategy = writeWaitStrategy;
+    }
+
+    public long getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    /**
+     * time to wait for space in the outgoing ring before a send fails
+     */
+    public void setWriteTimeout(long writeTimeout) {
+        this.writeTimeout = writeTimeout;
+    }
+
+    public long getCallTimeout() {
+        return callTimeout;
+    }
+
+    /**
+     * time to wait for the result of an outgoing call; 0 waits forever
+     */
+    public void setCallTimeout(long callTimeout) {
+        this.callTimeout = callTimeout;
+    }
+
+    public int getMaxPendingCalls() {
+        return maxPendingCalls;
+    }
+
+    public void setMaxPendingCalls(int maxPendingCalls) {
+        this.maxPendingCalls = maxPendingCalls;
+    }
+
+    public long getSweepInterval() {
+        return sweepInterval;
+    }
+
+    /**
+     * how often calls are checked for timeouts
+     */
+    public void setSweepInterval(long sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    public Executor getDispatchExecutor() {
+        return dispatchExecutor;
+    }
+
+    /**
+     * executor running incoming calls and parsing the results of asynchronous outgoing calls. It is not shut down
+     * by the protocol handler.
+     */
+    public void setDispatchExecutor(Executor dispatchExecutor) {
+        this.dispatchExecutor = dispatchExecutor;
+    }
+
+    public int getDispatchThreads() {
+        return dispatchThreads;
+    }
+
+    /**
+     * size of the thread pool created if no dispatch executor is set
+     */
+    public void setDispatchThreads(int dispatchThreads) {
+        this.dispatchThreads = dispatchThreads;
+    }
+
+    public MessageCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * format of the messages. The port id is "shm-" followed by the codec's name.
+     */
+    public void setCodec(MessageCodec codec) {
+        this.codec = codec;
+    }
+}
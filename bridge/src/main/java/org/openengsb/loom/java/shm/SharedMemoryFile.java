@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+
+/**
+ * a memory-mapped file holding one {@link RingBuffer} per direction. The bridge writes to {@link #CLIENT_TO_SERVER}
+ * and reads from {@link #SERVER_TO_CLIENT}, the remote side the other way round. Whichever side opens the file
+ * first creates it; the file header records the size of the rings so the other side can map them as they are.
+ */
+final class SharedMemoryFile {
+
+    static final int CLIENT_TO_SERVER = 0;
+    static final int SERVER_TO_CLIENT = 1;
+
+    private static final int MAGIC = 0x4c4f4f4d;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer mapping;
+    private final int ringCapacity;
+
+    SharedMemoryFile(File path, int ringCapacity) throws IOException {
+        file = new RandomAccessFile(path, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            FileLock lock = channel.lock();
+            try {
+                if (file.length() == 0) {
+                    create(channel, ringCapacity);
+                }
+                this.ringCapacity = readHeader(channel);
+                mapping = channel.map(MapMode.READ_WRITE, 0, getFileSize(this.ringCapacity));
+            } finally {
+                lock.release();
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    int getRingCapacity() {
+        return ringCapacity;
+    }
+
+    RingBuffer getRing(int index) {
+        ByteBuffer region = mapping.duplicate();
+        int offset = HEADER_SIZE + index * (RingBuffer.HEADER_SIZE + ringCapacity);
+        region.position(offset).limit(offset + RingBuffer.HEADER_SIZE + ringCapacity);
+        return new RingBuffer(region.slice());
+    }
+
+    /**
+     * the mapping itself stays valid until it is garbage collected
+     */
+    void close() throws IOException {
+        file.close();
+    }
+
+    private static void create(FileChannel channel, int ringCapacity) throws IOException {
+        if (ringCapacity <= 0 || Integer.bitCount(ringCapacity) != 1) {
+            throw new IllegalArgumentException("the ring capacity must be a power of two, not " + ringCapacity);
+        }
+        MappedByteBuffer header = channel.map(MapMode.READ_WRITE, 0, getFileSize(ringCapacity));
+        header.putInt(4, VERSION);
+        header.putInt(8, ringCapacity);
+        header.putInt(0, MAGIC);
+        header.force();
+    }
+
+    private static int readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("not a shared memory file of a compatible version");
+        }
+        return header.getInt(8);
+    }
+
+    private static long getFileSize(int ringCapacity) {
+        return HEADER_SIZE + 2L * (RingBuffer.HEADER_SIZE + ringCapacity);
+    }
+}
@@ -0,0 +1,465 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.core.api.remote.MethodResult.ReturnType;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.loom.java.LocalRequestHandler;
+import org.openengsb.loom.java.ProtocolHandler;
+import org.openengsb.loom.java.RequestHandler;
+import org.openengsb.loom.java.codec.MessageCodec;
+import org.openengsb.loom.java.metrics.BridgeMetrics;
+import org.openengsb.loom.java.metrics.IncomingCallMetrics;
+import org.openengsb.loom.java.metrics.OutgoingCallMetrics;
+import org.openengsb.loom.java.trace.TracePoint;
+import org.openengsb.loom.java.trace.Tracer;
+import org.openengsb.loom.java.util.BufferPool;
+import org.openengsb.loom.java.util.BufferPool.Buffer;
+import org.openengsb.loom.java.util.PendingCalls;
+import org.openengsb.loom.java.util.TypedMessageReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * talks to a remote side on the same host through a memory-mapped file (see {@link SharedMemoryFile}) instead of
+ * through a broker or a socket. Each direction is a single-producer/single-consumer {@link RingBuffer}; senders in
+ * this JVM take turns writing, and one reader thread polls the incoming ring using the configured
+ * {@link WaitStrategy}. Calls in both directions are paired with their results by correlation id.
+ * <p>
+ * Neither side can notice that the other one went away, so calls to a remote side that stopped fail by their
+ * timeout.
+ */
+public class SharedMemoryProtocolHandler implements ProtocolHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedMemoryProtocolHandler.class);
+
+    /*
+     * the rings rely on the hardware not reordering stores with stores or loads with loads (see RingBuffer)
+     */
+    private static final List<String> TSO_ARCHITECTURES =
+        Arrays.asList("x86", "i386", "i486", "i586", "i686", "amd64", "x86_64");
+    private static final long READER_STOP_TIMEOUT = 5000;
+
+    private class SharedMemoryRemoteRequestHandler implements RequestHandler {
+        private final ClassLoader resultClassLoader;
+
+        public SharedMemoryRemoteRequestHandler(ClassLoader resultClassLoader) {
+            this.resultClassLoader = resultClassLoader;
+        }
+
+        /*
+         * the result is parsed on the calling thread rather than on a dispatch thread
+         */
+        @Override
+        public MethodResultMessage process(MethodCallMessage request) throws Exception {
+            if (!request.isAnswer()) {
+                return getResult(sendOneWay(request));
+            }
+            return readResult(getResult(call(request)), resultClassLoader);
+        }
+
+        @Override
+        public ListenableFuture<MethodResultMessage> processAsync(MethodCallMessage request) {
+            if (!request.isAnswer()) {
+                return sendOneWay(request);
+            }
+            return Futures.transform(call(request), new AsyncFunction<byte[], MethodResultMessage>() {
+                @Override
+                public ListenableFuture<MethodResultMessage> apply(byte[] input) throws Exception {
+                    return Futures.immediateFuture(readResult(input, resultClassLoader));
+                }
+            }, dispatchExecutor);
+        }
+
+        @Override
+        public ListenableFuture<List<MethodResultMessage>> processBatch(List<MethodCallMessage> requests) {
+            List<ListenableFuture<MethodResultMessage>> results =
+                new ArrayList<ListenableFuture<MethodResultMessage>>(requests.size());
+            for (MethodCallMessage request : requests) {
+                results.add(processAsync(request));
+            }
+            return Futures.allAsList(results);
+        }
+    }
+
+    private static class Registration {
+        private final LocalRequestHandler requestHandler;
+        private final IncomingCallMetrics metrics;
+
+        Registration(LocalRequestHandler requestHandler, IncomingCallMetrics metrics) {
+            this.requestHandler = requestHandler;
+            this.metrics = metrics;
+        }
+    }
+
+    private class Reader implements Runnable {
+        @Override
+        public void run() {
+            WaitStrategy waitStrategy = configuration.getReadWaitStrategy();
+            int idleCount = 0;
+            while (!destroyed) {
+                Record record = incoming.poll();
+                if (record == null) {
+                    waitStrategy.idle(idleCount++);
+                    continue;
+                }
+                idleCount = 0;
+                try {
+                    recordReceived(record);
+                } catch (RuntimeException e) {
+                    LOGGER.error("error handling incoming message", e);
+                }
+            }
+        }
+    }
+
+    private class IncomingCall implements Runnable {
+        private final Record record;
+        private final Registration registration;
+        private final long receiveTime;
+
+        IncomingCall(Record record, Registration registration, long receiveTime) {
+            this.record = record;
+            this.registration = registration;
+            this.receiveTime = receiveTime;
+        }
+
+        @Override
+        public void run() {
+            IncomingCallMetrics metrics = registration.metrics;
+            long startTime = System.nanoTime();
+            metrics.recordQueueWait(startTime - receiveTime);
+            MethodCallMessage request;
+            try {
+                request = TypedMessageReader.readMethodCallMessage(objectMapper,
+                    objectMapper.getFactory().createParser(record.getPayload()),
+                    registration.requestHandler.getConnectorClassLoader());
+                metrics.recordUnmarshal(System.nanoTime() - startTime, record.getPayload().length);
+            } catch (IOException e) {
+                LOGGER.error("Exception when parsing call", e);
+                replyWithException(record, "could not parse the call: " + e.getMessage());
+                return;
+            }
+            tracer.trace(request.getCallId(), TracePoint.UNMARSHALLED, request);
+            long dispatchTime = System.nanoTime();
+            MethodResult result = registration.requestHandler.process(request.getMethodCall());
+            metrics.recordDispatch(System.nanoTime() - dispatchTime, result.getType() == ReturnType.Exception);
+            tracer.trace(request.getCallId(), TracePoint.DISPATCHED, result);
+            if (record.getType() != Record.CALL) {
+                return;
+            }
+            sendResult(record.getCorrelationId(), new MethodResultMessage(result, request.getCallId()), metrics);
+            tracer.trace(request.getCallId(), TracePoint.REPLY_SENT);
+        }
+    }
+
+    private final File file;
+    private final SharedMemoryConfiguration configuration;
+    private final MessageCodec codec;
+    private final ObjectMapper objectMapper;
+
+    private final SharedMemoryFile sharedMemory;
+    private final RingBuffer outgoing;
+    private final RingBuffer incoming;
+    private final Thread reader;
+    private final ConcurrentMap<String, Registration> registrations = new ConcurrentHashMap<String, Registration>();
+
+    private final PendingCalls<byte[]> pendingCalls;
+    /*
+     * the rings outlive this process, so results the remote side writes for a previous instance may still arrive.
+     * A random epoch in the upper half keeps them from matching the calls of this instance.
+     */
+    private final AtomicLong nextCorrelationId =
+        new AtomicLong(UUID.randomUUID().getMostSignificantBits() & 0xffffffff00000000L);
+    private final Executor dispatchExecutor;
+    private ExecutorService ownedDispatchExecutor;
+    private volatile boolean destroyed;
+
+    private final BufferPool buffers = new BufferPool(4096, 1024 * 1024);
+    private final Tracer tracer = Tracer.getDefault();
+
+    public SharedMemoryProtocolHandler(File file) throws IOException {
+        this(file, new SharedMemoryConfiguration());
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the JVM does not run on x86, where the rings are not safe
+     */
+    public SharedMemoryProtocolHandler(File file, SharedMemoryConfiguration configuration) throws IOException {
+        String architecture = System.getProperty("os.arch");
+        if (!TSO_ARCHITECTURES.contains(architecture)) {
+            throw new UnsupportedOperationException("shared memory needs an x86 processor, not " + architecture);
+        }
+        this.file = file;
+        this.configuration = configuration;
+        codec = configuration.getCodec();
+        objectMapper = codec.getObjectMapper();
+        sharedMemory = new SharedMemoryFile(file, configuration.getRingCapacity());
+        outgoing = sharedMemory.getRing(SharedMemoryFile.CLIENT_TO_SERVER);
+        incoming = sharedMemory.getRing(SharedMemoryFile.SERVER_TO_CLIENT);
+        pendingCalls = new PendingCalls<byte[]>(configuration.getMaxPendingCalls(),
+            configuration.getSweepInterval(), TimeUnit.MILLISECONDS);
+        if (configuration.getDispatchExecutor() != null) {
+            dispatchExecutor = configuration.getDispatchExecutor();
+        } else {
+            ownedDispatchExecutor = Executors.newFixedThreadPool(configuration.getDispatchThreads(),
+                new ThreadFactoryBuilder().setNameFormat("loom-shm-dispatch-%d").setDaemon(true).build());
+            dispatchExecutor = ownedDispatchExecutor;
+        }
+        reader = new Thread(new Reader(), "loom-shm-reader-" + file.getName());
+        reader.setDaemon(true);
+        reader.start();
+        LOGGER.info("opened shared memory file {}", file);
+    }
+
+    @Override
+    public void destroy() {
+        destroyed = true;
+        for (String uuid : registrations.keySet()) {
+            unregisterRequestHandler(uuid);
+        }
+        reader.interrupt();
+        try {
+            reader.join(READER_STOP_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (reader.isAlive()) {
+            LOGGER.warn("the reader of {} did not stop within {} ms", file, READER_STOP_TIMEOUT);
+        }
+        pendingCalls.close();
+        if (ownedDispatchExecutor != null) {
+            ownedDispatchExecutor.shutdown();
+        }
+        try {
+            sharedMemory.close();
+        } catch (IOException e) {
+            LOGGER.warn("could not close {}", file, e);
+        }
+    }
+
+    @Override
+    public RequestHandler createOutgoingRequestHandler() {
+        return createOutgoingRequestHandler(null);
+    }
+
+    @Override
+    public RequestHandler createOutgoingRequestHandler(ClassLoader resultClassLoader) {
+        return new SharedMemoryRemoteRequestHandler(resultClassLoader);
+    }
+
+    /**
+     * the remote side addresses calls to the connector with the returned destination
+     */
+    @Override
+    public String registerRequestHandler(LocalRequestHandler requestHandler, String uuid) {
+        registrations.put(uuid, new Registration(requestHandler, BridgeMetrics.getDefault().getIncoming(uuid)));
+        return "shm://" + file.getAbsolutePath() + "?" + uuid;
+    }
+
+    @Override
+    public void unregisterRequestHandler(String uuid) {
+        if (registrations.remove(uuid) != null) {
+            BridgeMetrics.getDefault().removeIncoming(uuid);
+        }
+    }
+
+    @Override
+    public String getPortId() {
+        return "shm-" + codec.getName();
+    }
+
+    private void recordReceived(Record record) {
+        if (record.getType() == Record.RESULT) {
+            String correlationId = Long.toString(record.getCorrelationId());
+            tracer.trace(correlationId, TracePoint.REPLY_RECEIVED);
+            if (!pendingCalls.complete(correlationId, record.getPayload())) {
+                LOGGER.debug("dropping result of unknown call {}", correlationId);
+            }
+            return;
+        }
+        Registration registration = registrations.get(record.getTarget());
+        if (registration == null) {
+            LOGGER.warn("got call for unknown connector {}", record.getTarget());
+            replyWithExceptionLater(record, "no connector " + record.getTarget() + " registered");
+            return;
+        }
+        try {
+            dispatchExecutor.execute(new IncomingCall(record, registration, System.nanoTime()));
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("could not dispatch call, the caller will time out", e);
+        }
+    }
+
+    /*
+     * writing the reply may wait for space in the outgoing ring. The reader thread must never wait for that, or two
+     * sides with full rings would stall each other, so the reply is sent from a dispatch thread.
+     */
+    private void replyWithExceptionLater(final Record record, final String message) {
+        try {
+            dispatchExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    replyWithException(record, message);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("could not send error reply, the caller will time out", e);
+        }
+    }
+
+    private ListenableFuture<byte[]> call(MethodCallMessage request) {
+        final OutgoingCallMetrics metrics = OutgoingCallMetrics.current();
+        long id = nextCorrelationId.incrementAndGet();
+        String correlationId = Long.toString(id);
+        ListenableFuture<byte[]> reply;
+        try {
+            reply = pendingCalls.register(correlationId, configuration.getCallTimeout(), TimeUnit.MILLISECONDS);
+        } catch (IllegalStateException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+        if (metrics != null) {
+            final long sendTime = System.nanoTime();
+            reply.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    metrics.recordReplyWait(System.nanoTime() - sendTime);
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+        try {
+            tracer.trace(correlationId, TracePoint.SEND, request);
+            send(Record.CALL, id, RingBuffer.NO_TARGET, request, null);
+        } catch (IOException e) {
+            pendingCalls.fail(correlationId, e);
+        }
+        return reply;
+    }
+
+    /*
+     * the future only reports whether the call could be written to the ring
+     */
+    private ListenableFuture<MethodResultMessage> sendOneWay(MethodCallMessage request) {
+        try {
+            tracer.trace(request.getCallId(), TracePoint.SEND, request);
+            send(Record.ONE_WAY_CALL, 0, RingBuffer.NO_TARGET, request, null);
+            return Futures.immediateFuture(null);
+        } catch (IOException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    private void sendResult(long correlationId, MethodResultMessage result, IncomingCallMetrics metrics) {
+        try {
+            send(Record.RESULT, correlationId, RingBuffer.NO_TARGET, result, metrics);
+        } catch (IOException e) {
+            LOGGER.error("error sending result", e);
+        }
+    }
+
+    private void replyWithException(Record record, String message) {
+        if (record.getType() != Record.CALL) {
+            return;
+        }
+        MethodResult result = new MethodResult(message, ReturnType.Exception);
+        sendResult(record.getCorrelationId(), new MethodResultMessage(result, null), null);
+    }
+
+    /*
+     * the message is encoded outside the lock and copied straight into the ring
+     */
+    private void send(byte type, long correlationId, byte[] target, Object message, IncomingCallMetrics metrics)
+        throws IOException {
+        long startTime = System.nanoTime();
+        Buffer buffer = buffers.acquire();
+        try {
+            objectMapper.writeValue(buffer, message);
+            if (metrics != null) {
+                metrics.recordMarshal(System.nanoTime() - startTime, buffer.size());
+            }
+            if (buffer.size() > outgoing.getMaxPayloadLength(target)) {
+                throw new IOException("a message of " + buffer.size() + " bytes does not fit the ring");
+            }
+            write(type, correlationId, target, buffer);
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    private void write(byte type, long correlationId, byte[] target, Buffer buffer) throws IOException {
+        WaitStrategy waitStrategy = configuration.getWriteWaitStrategy();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(configuration.getWriteTimeout());
+        synchronized (outgoing) {
+            int idleCount = 0;
+            while (!outgoing.offer(type, correlationId, target, buffer.array(), buffer.size())) {
+                if (destroyed) {
+                    throw new IOException("the protocol handler was destroyed");
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    throw new IOException("no space in the outgoing ring of " + file);
+                }
+                waitStrategy.idle(idleCount++);
+            }
+        }
+    }
+
+    private MethodResultMessage readResult(byte[] payload, ClassLoader classLoader) throws IOException {
+        if (classLoader == null) {
+            return objectMapper.readValue(payload, MethodResultMessage.class);
+        }
+        return TypedMessageReader.readMethodResultMessage(objectMapper,
+            objectMapper.getFactory().createParser(payload), classLoader);
+    }
+
+    private static <T> T getResult(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
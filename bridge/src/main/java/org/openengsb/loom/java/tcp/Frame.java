@@ -0,0 +1,121 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.tcp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * a length-prefixed message on a TCP connection. After the 4 byte length follow the frame type, the correlation id
+ * that pairs a result with its call, the UTF-8 encoded target (the connector a call is addressed to, empty
+ * otherwise) prefixed by its 2 byte length, and the encoded message.
+ */
+final class Frame {
+
+    static final byte CALL = 1;
+    static final byte ONE_WAY_CALL = 2;
+    static final byte RESULT = 3;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    static final byte[] NO_TARGET = new byte[0];
+
+    private static final int LENGTH_SIZE = 4;
+    private static final int HEADER_SIZE = 1 + 8 + 2;
+
+    private final byte type;
+    private final long correlationId;
+    private final String target;
+    private final byte[] payload;
+
+    Frame(byte type, long correlationId, String target, byte[] payload) {
+        this.type = type;
+        this.correlationId = correlationId;
+        this.target = target;
+        this.payload = payload;
+    }
+
+    byte getType() {
+        return type;
+    }
+
+    long getCorrelationId() {
+        return correlationId;
+    }
+
+    String getTarget() {
+        return target;
+    }
+
+    byte[] getPayload() {
+        return payload;
+    }
+
+    static int getFrameSize(byte[] target, int payloadLength) {
+        return LENGTH_SIZE + HEADER_SIZE + target.length + payloadLength;
+    }
+
+    static void write(ByteBuffer out, byte type, long correlationId, byte[] target, byte[] payload,
+            int payloadLength) {
+        out.putInt(HEADER_SIZE + target.length + payloadLength);
+        out.put(type);
+        out.putLong(correlationId);
+        out.putShort((short) target.length);
+        out.put(target);
+        out.put(payload, 0, payloadLength);
+    }
+
+    /**
+     * reads the next frame. If the buffer does not hold a complete frame, null is returned and the buffer is left
+     * untouched.
+     */
+    static Frame read(ByteBuffer in, int maxFrameSize) throws IOException {
+        if (in.remaining() < LENGTH_SIZE) {
+            return null;
+        }
+        int length = in.getInt(in.position());
+        if (length < HEADER_SIZE || length > maxFrameSize) {
+            throw new IOException("invalid frame length " + length);
+        }
+        if (in.remaining() < LENGTH_SIZE + length) {
+            return null;
+        }
+        in.getInt();
+        byte type = in.get();
+        long correlationId = in.getLong();
+        int targetLength = in.getShort() & 0xffff;
+        if (targetLength > length - HEADER_SIZE) {
+            throw new IOException("invalid target length " + targetLength);
+        }
+        byte[] target = new byte[targetLength];
+        in.get(target);
+        byte[] payload = new byte[length - HEADER_SIZE - targetLength];
+        in.get(payload);
+        return new Frame(type, correlationId, new String(target, UTF8), payload);
+    }
+
+    /**
+     * the number of bytes the buffer must hold before the next frame can be read
+     */
+    static int getRequiredSize(ByteBuffer in) {
+        if (in.remaining() < LENGTH_SIZE) {
+            return LENGTH_SIZE;
+        }
+        return LENGTH_SIZE + in.getInt(in.position());
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.tcp;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * the single thread doing all reads and writes of the connections. Other threads only queue work and wake it up.
+ */
+class IoLoop implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IoLoop.class);
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<TcpConnection> registrations = new ConcurrentLinkedQueue<TcpConnection>();
+    private final Queue<TcpConnection> flushes = new ConcurrentLinkedQueue<TcpConnection>();
+    private volatile boolean running = true;
+
+    IoLoop(String name) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void register(TcpConnection connection) {
+        registrations.add(connection);
+        selector.wakeup();
+    }
+
+    void requestFlush(TcpConnection connection) {
+        flushes.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * a connection failing with an unexpected exception is closed, the loop goes on serving the others
+     */
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                TcpConnection connection;
+                while ((connection = registrations.poll()) != null) {
+                    try {
+                        connection.register(selector);
+                    } catch (RuntimeException e) {
+                        fail(connection, e);
+                    }
+                }
+                while ((connection = flushes.poll()) != null) {
+                    try {
+                        connection.flush();
+                    } catch (RuntimeException e) {
+                        fail(connection, e);
+                    }
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    connection = (TcpConnection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                    } catch (RuntimeException e) {
+                        fail(connection, e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("I/O loop failed", e);
+        } catch (ClosedSelectorException e) {
+            LOGGER.debug("selector closed");
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void fail(TcpConnection connection, RuntimeException cause) {
+        LOGGER.error("unexpected error on connection, closing it", cause);
+        try {
+            connection.close(new IOException("unexpected error on connection", cause));
+        } catch (RuntimeException e) {
+            LOGGER.error("error while closing connection", e);
+        }
+    }
+
+    void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeAll() {
+        IOException cause = new IOException("the protocol handler was destroyed");
+        try {
+            for (SelectionKey key : selector.keys()) {
+                ((TcpConnection) key.attachment()).close(cause);
+            }
+        } catch (ClosedSelectorException e) {
+            LOGGER.debug("selector already closed");
+        }
+        TcpConnection connection;
+        while ((connection = registrations.poll()) != null) {
+            connection.close(cause);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.warn("could not close selector", e);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.tcp;
+
+import java.util.concurrent.Executor;
+
+import org.openengsb.loom.java.codec.JsonCodec;
+import org.openengsb.loom.java.codec.MessageCodec;
+
+/**
+ * tuning options of a {@link TcpProtocolHandler}. All timeouts are in milliseconds.
+ */
+public class TcpConfiguration {
+
+    private int connections = 2;
+    private long connectTimeout = 5000;
+    private long callTimeout = 60000;
+    private int maxPendingCalls = 10000;
+    private long sweepInterval = 100;
+    private Executor dispatchExecutor;
+    private int dispatchThreads = 4;
+    private MessageCodec codec = new JsonCodec();
+    private int bufferSize = 16 * 1024;
+    private int maxPooledBuffers = 256;
+    private int maxFrameSize = 16 * 1024 * 1024;
+
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * number of persistent connections the calls are spread over
+     */
+    public void setConnections(int connections) {
+        this.connections = connections;
+    }
+
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(long connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public long getCallTimeout() {
+        return callTimeout;
+    }
+
+    /**
+     * time to wait for the result of an outgoing call; 0 waits forever
+     */
+    public void setCallTimeout(long callTimeout) {
+        this.callTimeout = callTimeout;
+    }
+
+    public int getMaxPendingCalls() {
+        return maxPendingCalls;
+    }
+
+    public void setMaxPendingCalls(int maxPendingCalls) {
+        this.maxPendingCalls = maxPendingCalls;
+    }
+
+    public long getSweepInterval() {
+        return sweepInterval;
+    }
+
+    /**
+     * how often calls are checked for timeouts
+     */
+    public void setSweepInterval(long sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    public Executor getDispatchExecutor() {
+        return dispatchExecutor;
+    }
+
+    /**
+     * executor running incoming calls and parsing the results of asynchronous outgoing calls. It is not shut down
+     * by the protocol handler.
+     */
+    public void setDispatchExecutor(Executor dispatchExecutor) {
+        this.dispatchExecutor = dispatchExecutor;
+    }
+
+    public int getDispatchThreads() {
+        return dispatchThreads;
+    }
+
+    /**
+     * size of the thread pool created if no dispatch executor is set. Calls are never processed on the I/O
+     * thread, so this must be at least 1.
+     */
+    public void setDispatchThreads(int dispatchThreads) {
+        this.dispatchThreads = dispatchThreads;
+    }
+
+    public MessageCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * format of the messages. The port id is "tcp-" followed by the codec's name.
+     */
+    public void setCodec(MessageCodec codec) {
+        this.codec = codec;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * size of the pooled direct buffers used for reading and writing. Larger frames use a heap buffer of their
+     * own.
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getMaxPooledBuffers() {
+        return maxPooledBuffers;
+    }
+
+    public void setMaxPooledBuffers(int maxPooledBuffers) {
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    /**
+     * connections receiving larger frames are closed
+     */
+    public void setMaxFrameSize(int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+}
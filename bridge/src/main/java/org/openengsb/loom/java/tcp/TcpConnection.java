@@ -0,0 +1,216 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.tcp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.openengsb.loom.java.util.DirectBufferPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * a non-blocking connection carrying frames in both directions. Frames may be queued from any thread, reading,
+ * writing and closing on I/O errors happen on the thread of the {@link IoLoop}.
+ */
+class TcpConnection {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TcpConnection.class);
+
+    interface Listener {
+        /**
+         * called on the I/O thread, so it must not block
+         */
+        void frameReceived(TcpConnection connection, Frame frame);
+
+        void connectionClosed(TcpConnection connection, IOException cause);
+    }
+
+    private final SocketChannel channel;
+    private final IoLoop ioLoop;
+    private final DirectBufferPool bufferPool;
+    private final int maxFrameSize;
+    private final Listener listener;
+
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Set<String> outstandingCalls =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private SelectionKey key;
+    private ByteBuffer readBuffer;
+
+    TcpConnection(SocketChannel channel, IoLoop ioLoop, DirectBufferPool bufferPool, int maxFrameSize,
+            Listener listener) {
+        this.channel = channel;
+        this.ioLoop = ioLoop;
+        this.bufferPool = bufferPool;
+        this.maxFrameSize = maxFrameSize;
+        this.listener = listener;
+        readBuffer = bufferPool.acquire();
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * ids of the calls sent over this connection that still wait for their result. They are failed when the
+     * connection is closed.
+     */
+    Set<String> getOutstandingCalls() {
+        return outstandingCalls;
+    }
+
+    /**
+     * queues a frame, the buffer is returned to the pool once it is written
+     */
+    void write(ByteBuffer frame) throws IOException {
+        if (closed.get()) {
+            bufferPool.release(frame);
+            throw new ClosedChannelException();
+        }
+        outbound.add(frame);
+        if (closed.get()) {
+            // closed while queueing, so close() may have drained the queue before the frame was added
+            if (outbound.remove(frame)) {
+                bufferPool.release(frame);
+            }
+            throw new ClosedChannelException();
+        }
+        if (flushRequested.compareAndSet(false, true)) {
+            ioLoop.requestFlush(this);
+        }
+    }
+
+    /**
+     * frames written before the connection was registered are sent right away
+     */
+    void register(Selector selector) {
+        try {
+            key = channel.register(selector, SelectionKey.OP_READ, this);
+        } catch (IOException e) {
+            close(e);
+            return;
+        }
+        if (!outbound.isEmpty()) {
+            flush();
+        }
+    }
+
+    void flush() {
+        if (closed.get()) {
+            return;
+        }
+        if (key == null) {
+            // not registered yet, register() flushes the queued frames
+            return;
+        }
+        try {
+            ByteBuffer frame;
+            while ((frame = outbound.peek()) != null) {
+                channel.write(frame);
+                if (frame.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                outbound.poll();
+                bufferPool.release(frame);
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            flushRequested.set(false);
+            if (!outbound.isEmpty() && flushRequested.compareAndSet(false, true)) {
+                ioLoop.requestFlush(this);
+            }
+        } catch (IOException e) {
+            close(e);
+        }
+    }
+
+    void read() {
+        try {
+            if (channel.read(readBuffer) < 0) {
+                close(new EOFException("connection closed by peer"));
+                return;
+            }
+            readBuffer.flip();
+            Frame frame;
+            while ((frame = Frame.read(readBuffer, maxFrameSize)) != null) {
+                listener.frameReceived(this, frame);
+            }
+            prepareReadBuffer();
+        } catch (IOException e) {
+            close(e);
+        }
+    }
+
+    /*
+     * frames larger than the pooled buffers are read into a heap buffer of their size, which is dropped again
+     * afterwards
+     */
+    private void prepareReadBuffer() {
+        boolean pooled = readBuffer.capacity() == bufferPool.getBufferSize();
+        if (!readBuffer.hasRemaining() && !pooled) {
+            readBuffer = bufferPool.acquire();
+            return;
+        }
+        int requiredSize = Frame.getRequiredSize(readBuffer);
+        if (requiredSize <= readBuffer.capacity()) {
+            readBuffer.compact();
+            return;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(requiredSize);
+        larger.put(readBuffer);
+        if (pooled) {
+            bufferPool.release(readBuffer);
+        }
+        readBuffer = larger;
+    }
+
+    void close(IOException cause) {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        LOGGER.debug("closing connection", cause);
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("error while closing connection", e);
+        }
+        ByteBuffer frame;
+        while ((frame = outbound.poll()) != null) {
+            bufferPool.release(frame);
+        }
+        listener.connectionClosed(this, cause);
+    }
+}
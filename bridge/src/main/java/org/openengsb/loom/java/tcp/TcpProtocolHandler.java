@@ -0,0 +1,460 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.tcp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.core.api.remote.MethodResult.ReturnType;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.loom.java.LocalRequestHandler;
+import org.openengsb.loom.java.ProtocolHandler;
+import org.openengsb.loom.java.RequestHandler;
+import org.openengsb.loom.java.codec.MessageCodec;
+import org.openengsb.loom.java.metrics.BridgeMetrics;
+import org.openengsb.loom.java.metrics.IncomingCallMetrics;
+import org.openengsb.loom.java.metrics.OutgoingCallMetrics;
+import org.openengsb.loom.java.trace.TracePoint;
+import org.openengsb.loom.java.trace.Tracer;
+import org.openengsb.loom.java.util.BufferPool;
+import org.openengsb.loom.java.util.BufferPool.Buffer;
+import org.openengsb.loom.java.util.DirectBufferPool;
+import org.openengsb.loom.java.util.PendingCalls;
+import org.openengsb.loom.java.util.TypedMessageReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * talks to the remote side directly over a few persistent TCP connections instead of through a broker. Calls in
+ * both directions are multiplexed over the connections as length-prefixed frames (see {@link Frame}) and paired
+ * with their results by correlation id. Incoming calls carry the id of the connector they are addressed to.
+ */
+public class TcpProtocolHandler implements ProtocolHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TcpProtocolHandler.class);
+
+    private class TcpRemoteRequestHandler implements RequestHandler {
+        private final ClassLoader resultClassLoader;
+
+        public TcpRemoteRequestHandler(ClassLoader resultClassLoader) {
+            this.resultClassLoader = resultClassLoader;
+        }
+
+        /*
+         * the result is parsed on the calling thread rather than on a dispatch thread
+         */
+        @Override
+        public MethodResultMessage process(MethodCallMessage request) throws Exception {
+            if (!request.isAnswer()) {
+                return getResult(sendOneWay(request));
+            }
+            return readResult(getResult(call(request)), resultClassLoader);
+        }
+
+        @Override
+        public ListenableFuture<MethodResultMessage> processAsync(MethodCallMessage request) {
+            if (!request.isAnswer()) {
+                return sendOneWay(request);
+            }
+            return Futures.transform(call(request), new AsyncFunction<byte[], MethodResultMessage>() {
+                @Override
+                public ListenableFuture<MethodResultMessage> apply(byte[] input) throws Exception {
+                    return Futures.immediateFuture(readResult(input, resultClassLoader));
+                }
+            }, dispatchExecutor);
+        }
+
+        @Override
+        public ListenableFuture<List<MethodResultMessage>> processBatch(List<MethodCallMessage> requests) {
+            List<ListenableFuture<MethodResultMessage>> results =
+                new ArrayList<ListenableFuture<MethodResultMessage>>(requests.size());
+            for (MethodCallMessage request : requests) {
+                results.add(processAsync(request));
+            }
+            return Futures.allAsList(results);
+        }
+    }
+
+    private static class Registration {
+        private final LocalRequestHandler requestHandler;
+        private final IncomingCallMetrics metrics;
+
+        Registration(LocalRequestHandler requestHandler, IncomingCallMetrics metrics) {
+            this.requestHandler = requestHandler;
+            this.metrics = metrics;
+        }
+    }
+
+    private class ConnectionListener implements TcpConnection.Listener {
+        @Override
+        public void frameReceived(TcpConnection connection, Frame frame) {
+            if (frame.getType() == Frame.RESULT) {
+                String correlationId = Long.toString(frame.getCorrelationId());
+                tracer.trace(correlationId, TracePoint.REPLY_RECEIVED);
+                if (!pendingCalls.complete(correlationId, frame.getPayload())) {
+                    LOGGER.debug("dropping result of unknown call {}", correlationId);
+                }
+                return;
+            }
+            Registration registration = registrations.get(frame.getTarget());
+            if (registration == null) {
+                LOGGER.warn("got call for unknown connector {}", frame.getTarget());
+                replyWithException(connection, frame, "no connector " + frame.getTarget() + " registered");
+                return;
+            }
+            try {
+                dispatchExecutor.execute(new IncomingCall(connection, frame, registration, System.nanoTime()));
+            } catch (RejectedExecutionException e) {
+                LOGGER.error("could not dispatch call", e);
+                replyWithException(connection, frame, "the call was rejected");
+            }
+        }
+
+        @Override
+        public void connectionClosed(TcpConnection connection, IOException cause) {
+            if (destroyed) {
+                LOGGER.debug("connection to {} closed", address);
+            } else {
+                LOGGER.warn("connection to {} closed: {}", address, cause.getMessage());
+            }
+            for (String correlationId : connection.getOutstandingCalls()) {
+                pendingCalls.fail(correlationId, cause);
+            }
+        }
+    }
+
+    private class IncomingCall implements Runnable {
+        private final TcpConnection connection;
+        private final Frame frame;
+        private final Registration registration;
+        private final long receiveTime;
+
+        IncomingCall(TcpConnection connection, Frame frame, Registration registration, long receiveTime) {
+            this.connection = connection;
+            this.frame = frame;
+            this.registration = registration;
+            this.receiveTime = receiveTime;
+        }
+
+        @Override
+        public void run() {
+            IncomingCallMetrics metrics = registration.metrics;
+            long startTime = System.nanoTime();
+            metrics.recordQueueWait(startTime - receiveTime);
+            MethodCallMessage request;
+            try {
+                request = TypedMessageReader.readMethodCallMessage(objectMapper,
+                    objectMapper.getFactory().createParser(frame.getPayload()),
+                    registration.requestHandler.getConnectorClassLoader());
+                metrics.recordUnmarshal(System.nanoTime() - startTime, frame.getPayload().length);
+            } catch (IOException e) {
+                LOGGER.error("Exception when parsing call", e);
+                replyWithException(connection, frame, "could not parse the call: " + e.getMessage());
+                return;
+            }
+            tracer.trace(request.getCallId(), TracePoint.UNMARSHALLED, request);
+            long dispatchTime = System.nanoTime();
+            MethodResult result = registration.requestHandler.process(request.getMethodCall());
+            metrics.recordDispatch(System.nanoTime() - dispatchTime, result.getType() == ReturnType.Exception);
+            tracer.trace(request.getCallId(), TracePoint.DISPATCHED, result);
+            if (frame.getType() != Frame.CALL) {
+                return;
+            }
+            sendResult(connection, frame.getCorrelationId(), new MethodResultMessage(result, request.getCallId()),
+                metrics);
+            tracer.trace(request.getCallId(), TracePoint.REPLY_SENT);
+        }
+    }
+
+    private final String host;
+    private final int port;
+    private final InetSocketAddress address;
+    private final TcpConfiguration configuration;
+    private final MessageCodec codec;
+    private final ObjectMapper objectMapper;
+
+    private final IoLoop ioLoop;
+    private final ConnectionListener connectionListener = new ConnectionListener();
+    private final AtomicReferenceArray<TcpConnection> connections;
+    private final AtomicInteger nextConnection = new AtomicInteger();
+    private final ConcurrentMap<String, Registration> registrations = new ConcurrentHashMap<String, Registration>();
+
+    private final PendingCalls<byte[]> pendingCalls;
+    private final AtomicLong nextCorrelationId = new AtomicLong();
+    private final Executor dispatchExecutor;
+    private ExecutorService ownedDispatchExecutor;
+    private volatile boolean destroyed;
+
+    private final BufferPool buffers = new BufferPool(4096, 1024 * 1024);
+    private final DirectBufferPool directBuffers;
+    private final Tracer tracer = Tracer.getDefault();
+
+    public TcpProtocolHandler(String host, int port) throws IOException {
+        this(host, port, new TcpConfiguration());
+    }
+
+    public TcpProtocolHandler(String host, int port, TcpConfiguration configuration) throws IOException {
+        this.host = host;
+        this.port = port;
+        this.configuration = configuration;
+        address = new InetSocketAddress(host, port);
+        codec = configuration.getCodec();
+        objectMapper = codec.getObjectMapper();
+        pendingCalls = new PendingCalls<byte[]>(configuration.getMaxPendingCalls(),
+            configuration.getSweepInterval(), TimeUnit.MILLISECONDS);
+        directBuffers = new DirectBufferPool(configuration.getBufferSize(), configuration.getMaxPooledBuffers());
+        if (configuration.getDispatchExecutor() != null) {
+            dispatchExecutor = configuration.getDispatchExecutor();
+        } else {
+            ownedDispatchExecutor = Executors.newFixedThreadPool(configuration.getDispatchThreads(),
+                new ThreadFactoryBuilder().setNameFormat("loom-tcp-dispatch-%d").setDaemon(true).build());
+            dispatchExecutor = ownedDispatchExecutor;
+        }
+        ioLoop = new IoLoop("loom-tcp-io-" + host + ":" + port);
+        connections = new AtomicReferenceArray<TcpConnection>(configuration.getConnections());
+        try {
+            for (int i = 0; i < connections.length(); i++) {
+                connections.set(i, connect());
+            }
+        } catch (IOException e) {
+            destroy();
+            throw e;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        destroyed = true;
+        for (String uuid : registrations.keySet()) {
+            unregisterRequestHandler(uuid);
+        }
+        ioLoop.close();
+        pendingCalls.close();
+        if (ownedDispatchExecutor != null) {
+            ownedDispatchExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public RequestHandler createOutgoingRequestHandler() {
+        return createOutgoingRequestHandler(null);
+    }
+
+    @Override
+    public RequestHandler createOutgoingRequestHandler(ClassLoader resultClassLoader) {
+        return new TcpRemoteRequestHandler(resultClassLoader);
+    }
+
+    /**
+     * the remote side addresses calls to the connector with the returned destination on any of the connections
+     */
+    @Override
+    public String registerRequestHandler(LocalRequestHandler requestHandler, String uuid) {
+        registrations.put(uuid, new Registration(requestHandler, BridgeMetrics.getDefault().getIncoming(uuid)));
+        return "tcp://" + host + ":" + port + "?" + uuid;
+    }
+
+    @Override
+    public void unregisterRequestHandler(String uuid) {
+        if (registrations.remove(uuid) != null) {
+            BridgeMetrics.getDefault().removeIncoming(uuid);
+        }
+    }
+
+    @Override
+    public String getPortId() {
+        return "tcp-" + codec.getName();
+    }
+
+    private ListenableFuture<byte[]> call(MethodCallMessage request) {
+        final OutgoingCallMetrics metrics = OutgoingCallMetrics.current();
+        long id = nextCorrelationId.incrementAndGet();
+        final String correlationId = Long.toString(id);
+        ListenableFuture<byte[]> reply;
+        try {
+            reply = pendingCalls.register(correlationId, configuration.getCallTimeout(), TimeUnit.MILLISECONDS);
+        } catch (IllegalStateException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+        final TcpConnection connection;
+        try {
+            connection = getConnection();
+        } catch (IOException e) {
+            pendingCalls.fail(correlationId, e);
+            return reply;
+        }
+        final long sendTime = System.nanoTime();
+        connection.getOutstandingCalls().add(correlationId);
+        reply.addListener(new Runnable() {
+            @Override
+            public void run() {
+                connection.getOutstandingCalls().remove(correlationId);
+                if (metrics != null) {
+                    metrics.recordReplyWait(System.nanoTime() - sendTime);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        if (connection.isClosed()) {
+            // the connection may have failed its outstanding calls before this one was added
+            pendingCalls.fail(correlationId, new ClosedChannelException());
+            return reply;
+        }
+        try {
+            tracer.trace(correlationId, TracePoint.SEND, request);
+            connection.write(encode(Frame.CALL, id, Frame.NO_TARGET, request, null));
+        } catch (IOException e) {
+            pendingCalls.fail(correlationId, e);
+        }
+        return reply;
+    }
+
+    /*
+     * the future only reports whether the call could be queued for sending
+     */
+    private ListenableFuture<MethodResultMessage> sendOneWay(MethodCallMessage request) {
+        try {
+            TcpConnection connection = getConnection();
+            tracer.trace(request.getCallId(), TracePoint.SEND, request);
+            connection.write(encode(Frame.ONE_WAY_CALL, 0, Frame.NO_TARGET, request, null));
+            return Futures.immediateFuture(null);
+        } catch (IOException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    private void sendResult(TcpConnection connection, long correlationId, MethodResultMessage result,
+            IncomingCallMetrics metrics) {
+        try {
+            connection.write(encode(Frame.RESULT, correlationId, Frame.NO_TARGET, result, metrics));
+        } catch (IOException e) {
+            LOGGER.error("error sending result", e);
+        }
+    }
+
+    private void replyWithException(TcpConnection connection, Frame frame, String message) {
+        if (frame.getType() != Frame.CALL) {
+            return;
+        }
+        MethodResult result = new MethodResult(message, ReturnType.Exception);
+        sendResult(connection, frame.getCorrelationId(), new MethodResultMessage(result, null), null);
+    }
+
+    /*
+     * connections are used round-robin, a connection that was closed is replaced on its next turn
+     */
+    private TcpConnection getConnection() throws IOException {
+        int index = (nextConnection.getAndIncrement() & Integer.MAX_VALUE) % connections.length();
+        TcpConnection connection = connections.get(index);
+        if (!connection.isClosed()) {
+            return connection;
+        }
+        synchronized (connections) {
+            connection = connections.get(index);
+            if (connection.isClosed()) {
+                connection = connect();
+                connections.set(index, connection);
+            }
+            return connection;
+        }
+    }
+
+    private TcpConnection connect() throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        try {
+            channel.socket().connect(address, (int) configuration.getConnectTimeout());
+            channel.socket().setTcpNoDelay(true);
+            channel.configureBlocking(false);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        LOGGER.info("connected to {}", address);
+        TcpConnection connection = new TcpConnection(channel, ioLoop, directBuffers,
+            configuration.getMaxFrameSize(), connectionListener);
+        ioLoop.register(connection);
+        return connection;
+    }
+
+    private ByteBuffer encode(byte type, long correlationId, byte[] target, Object message,
+            IncomingCallMetrics metrics) throws IOException {
+        long startTime = System.nanoTime();
+        Buffer buffer = buffers.acquire();
+        try {
+            objectMapper.writeValue(buffer, message);
+            if (metrics != null) {
+                metrics.recordMarshal(System.nanoTime() - startTime, buffer.size());
+            }
+            int frameSize = Frame.getFrameSize(target, buffer.size());
+            if (frameSize > configuration.getMaxFrameSize()) {
+                throw new IOException("a message of " + buffer.size() + " bytes exceeds the maximum frame size");
+            }
+            ByteBuffer frame = frameSize <= directBuffers.getBufferSize()
+                    ? directBuffers.acquire() : ByteBuffer.allocate(frameSize);
+            Frame.write(frame, type, correlationId, target, buffer.array(), buffer.size());
+            frame.flip();
+            return frame;
+        } finally {
+            buffers.release(buffer);
+        }
+    }
+
+    private MethodResultMessage readResult(byte[] payload, ClassLoader classLoader) throws IOException {
+        if (classLoader == null) {
+            return objectMapper.readValue(payload, MethodResultMessage.class);
+        }
+        return TypedMessageReader.readMethodResultMessage(objectMapper,
+            objectMapper.getFactory().createParser(payload), classLoader);
+    }
+
+    private static <T> T getResult(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
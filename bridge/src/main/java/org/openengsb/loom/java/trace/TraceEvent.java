@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.trace;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+public class TraceEvent {
+
+    private final long timestamp;
+    private final long nanoTime;
+    private final String thread;
+    private final String callId;
+    private final TracePoint point;
+    private final String detail;
+
+    public TraceEvent(long timestamp, long nanoTime, String thread, String callId, TracePoint point, String detail) {
+        this.timestamp = timestamp;
+        this.nanoTime = nanoTime;
+        this.thread = thread;
+        this.callId = callId;
+        this.point = point;
+        this.detail = detail;
+    }
+
+    /**
+     * wall clock time in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * {@link System#nanoTime()} when the event was recorded, for measuring the time between events of one process
+     */
+    public long getNanoTime() {
+        return nanoTime;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public String getCallId() {
+        return callId;
+    }
+
+    public TracePoint getPoint() {
+        return point;
+    }
+
+    /**
+     * the rendered payload, or null if payloads are not rendered
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(timestamp)));
+        sb.append(" [").append(thread).append("] ").append(callId).append(' ').append(point);
+        if (detail != null) {
+            sb.append(' ').append(detail);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.trace;
+
+/**
+ * the steps of a call's lifecycle that are recorded for sampled calls
+ */
+public enum TracePoint {
+    /**
+     * an outgoing call is handed to the JMS producer
+     */
+    SEND,
+    /**
+     * the producer returned. For persistent messages this means the broker has accepted the call.
+     */
+    BROKER_ACK,
+    REPLY_RECEIVED,
+    /**
+     * an incoming call was parsed
+     */
+    UNMARSHALLED,
+    /**
+     * the connector returned from an incoming call
+     */
+    DISPATCHED,
+    REPLY_SENT
+}
@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.trace;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.openengsb.loom.java.metrics.BridgeMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * records the lifecycle events of a sample of the calls into a fixed-size ring buffer, overwriting the oldest
+ * events. Whether a call is sampled depends only on its id, so all events of a sampled call are kept. Calls that
+ * are not sampled cost a hash lookup; payloads are only rendered for sampled calls.
+ */
+public class Tracer implements TracerMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Tracer.class);
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int DEFAULT_SAMPLE_INTERVAL = 1000;
+
+    private static final Tracer DEFAULT = createDefault();
+
+    private final AtomicReferenceArray<TraceEvent> events;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    private volatile int sampleInterval;
+    private volatile boolean renderPayloads = true;
+
+    /**
+     * @param capacity number of buffered events, rounded up to a power of two
+     */
+    public Tracer(int capacity, int sampleInterval) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        events = new AtomicReferenceArray<TraceEvent>(size);
+        mask = size - 1;
+        this.sampleInterval = sampleInterval;
+    }
+
+    /**
+     * the tracer used by the protocol handlers, registered as MBean "{@value BridgeMetrics#DOMAIN}:type=Tracer"
+     */
+    public static Tracer getDefault() {
+        return DEFAULT;
+    }
+
+    public boolean isSampled(String callId) {
+        int interval = sampleInterval;
+        if (interval <= 0 || callId == null) {
+            return false;
+        }
+        return (callId.hashCode() & Integer.MAX_VALUE) % interval == 0;
+    }
+
+    public void trace(String callId, TracePoint point) {
+        trace(callId, point, null);
+    }
+
+    /**
+     * records the event if the call is sampled. The payload is rendered with toString only in that case.
+     */
+    public void trace(String callId, TracePoint point, Object payload) {
+        if (!isSampled(callId)) {
+            return;
+        }
+        String detail = renderPayloads && payload != null ? String.valueOf(payload) : null;
+        TraceEvent event = new TraceEvent(System.currentTimeMillis(), System.nanoTime(),
+            Thread.currentThread().getName(), callId, point, detail);
+        events.set((int) (next.getAndIncrement() & mask), event);
+    }
+
+    /**
+     * returns the buffered events, oldest first. Events recorded while copying may be missing.
+     */
+    public List<TraceEvent> getEvents() {
+        long end = next.get();
+        long start = Math.max(0, end - events.length());
+        List<TraceEvent> result = new ArrayList<TraceEvent>((int) (end - start));
+        for (long i = start; i < end; i++) {
+            TraceEvent event = events.get((int) (i & mask));
+            if (event != null) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    @Override
+    public void setSampleInterval(int sampleInterval) {
+        this.sampleInterval = sampleInterval;
+    }
+
+    @Override
+    public boolean isRenderPayloads() {
+        return renderPayloads;
+    }
+
+    @Override
+    public void setRenderPayloads(boolean renderPayloads) {
+        this.renderPayloads = renderPayloads;
+    }
+
+    @Override
+    public int getCapacity() {
+        return events.length();
+    }
+
+    @Override
+    public long getRecordedEvents() {
+        return next.get();
+    }
+
+    @Override
+    public String[] dump() {
+        List<TraceEvent> snapshot = getEvents();
+        String[] result = new String[snapshot.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = snapshot.get(i).toString();
+        }
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < events.length(); i++) {
+            events.set(i, null);
+        }
+    }
+
+    private static Tracer createDefault() {
+        Tracer tracer = new Tracer(DEFAULT_CAPACITY, DEFAULT_SAMPLE_INTERVAL);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(tracer,
+                new ObjectName(BridgeMetrics.DOMAIN + ":type=Tracer"));
+        } catch (JMException e) {
+            LOGGER.warn("could not register the tracer", e);
+        }
+        return tracer;
+    }
+}
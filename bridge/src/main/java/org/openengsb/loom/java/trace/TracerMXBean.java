@@ -0,0 +1,44 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.trace;
+
+public interface TracerMXBean {
+
+    /**
+     * one in this many calls is traced, 0 disables tracing
+     */
+    int getSampleInterval();
+
+    void setSampleInterval(int sampleInterval);
+
+    boolean isRenderPayloads();
+
+    void setRenderPayloads(boolean renderPayloads);
+
+    int getCapacity();
+
+    long getRecordedEvents();
+
+    /**
+     * returns the buffered events, oldest first
+     */
+    String[] dump();
+
+    void clear();
+
+}
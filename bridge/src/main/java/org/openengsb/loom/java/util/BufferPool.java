@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.util;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * hands out growable byte buffers that are kept per thread and reused, so that serializing a message does not
+ * allocate a new array every time. Buffers that grew beyond the retention limit are dropped after use.
+ */
+public class BufferPool {
+
+    public static final class Buffer extends OutputStream {
+        private byte[] bytes;
+        private int size;
+
+        private Buffer(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(size + 1);
+            bytes[size++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(size + len);
+            System.arraycopy(b, off, bytes, size, len);
+            size += len;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        public void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+
+        /**
+         * the backing array; only the first {@link #size()} bytes are valid
+         */
+        public byte[] array() {
+            return bytes;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public void setSize(int size) {
+            ensureCapacity(size);
+            this.size = size;
+        }
+    }
+
+    private final int initialCapacity;
+    private final int maxRetainedCapacity;
+    private final ThreadLocal<Buffer> buffers = new ThreadLocal<Buffer>();
+
+    public BufferPool(int initialCapacity, int maxRetainedCapacity) {
+        this.initialCapacity = initialCapacity;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+    }
+
+    /**
+     * returns an empty buffer that belongs to the caller until it is released
+     */
+    public Buffer acquire() {
+        Buffer buffer = buffers.get();
+        if (buffer == null) {
+            return new Buffer(initialCapacity);
+        }
+        buffers.remove();
+        buffer.size = 0;
+        return buffer;
+    }
+
+    public void release(Buffer buffer) {
+        if (buffer.bytes.length <= maxRetainedCapacity) {
+            buffers.set(buffer);
+        }
+    }
+}
@@ -17,8 +17,12 @@
 
 package org.openengsb.loom.java.util;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.openengsb.core.api.remote.MethodCall;
 import org.openengsb.core.api.remote.MethodCallMessage;
@@ -29,7 +33,12 @@ import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 
 public final class JsonUtils {
 
@@ -37,21 +46,78 @@ public final class JsonUtils {
 
     private static final ObjectMapper MAPPER = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
 
+    /*
+     * resolved classes per class loader. The loaders are weak keys and the classes are only weakly referenced, so the
+     * cache does not keep bundle class loaders from being unloaded.
+     */
+    private static final LoadingCache<ClassLoader, ConcurrentMap<String, WeakReference<Class<?>>>> TYPES =
+        CacheBuilder.newBuilder().weakKeys()
+            .build(new CacheLoader<ClassLoader, ConcurrentMap<String, WeakReference<Class<?>>>>() {
+                @Override
+                public ConcurrentMap<String, WeakReference<Class<?>>> load(ClassLoader key) {
+                    return new ConcurrentHashMap<String, WeakReference<Class<?>>>();
+                }
+            });
+
+    private static final ClassValue<ObjectReader> READERS = new ClassValue<ObjectReader>() {
+        @Override
+        protected ObjectReader computeValue(Class<?> type) {
+            return MAPPER.reader(MAPPER.getTypeFactory().constructType(type));
+        }
+    };
+
     private static Object convertArgument(ClassLoader classLoader, String className, Object arg) {
+        if (arg == null) {
+            return null;
+        }
         try {
             Class<?> type = findType(classLoader, className);
-            return MAPPER.convertValue(arg, type);
+            return convertValue(arg, type);
         } catch (ClassNotFoundException e) {
             LOGGER.error("could not convert argument " + arg, e);
             return arg;
         }
     }
 
-    private static Class<?> findType(ClassLoader classLoader, String className) throws ClassNotFoundException {
+    private static Object convertValue(Object value, Class<?> type) {
+        if (value == null || type.isInstance(value)) {
+            return value;
+        }
+        try {
+            TokenBuffer buffer = new TokenBuffer(MAPPER, false);
+            MAPPER.writeValue(buffer, value);
+            return READERS.get(type).readValue(buffer.asParser());
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    static ObjectReader getReader(Class<?> type) {
+        return READERS.get(type);
+    }
+
+    static Class<?> findType(ClassLoader classLoader, String className) throws ClassNotFoundException {
+        if (classLoader == null) {
+            return loadType(classLoader, className);
+        }
+        ConcurrentMap<String, WeakReference<Class<?>>> types = TYPES.getUnchecked(classLoader);
+        WeakReference<Class<?>> reference = types.get(className);
+        Class<?> type = reference != null ? reference.get() : null;
+        if (type == null) {
+            type = loadType(classLoader, className);
+            types.put(className, new WeakReference<Class<?>>(type));
+        }
+        return type;
+    }
+
+    private static Class<?> loadType(ClassLoader classLoader, String className) throws ClassNotFoundException {
         if (className.startsWith("[L")) {
-            Class<?> componentType = findType(classLoader, className.substring(2, className.length() - 1));
+            Class<?> componentType = loadType(classLoader, className.substring(2, className.length() - 1));
             return Array.newInstance(componentType, 0).getClass();
         }
+        if (classLoader == null) {
+            return Class.forName(className);
+        }
         return classLoader.loadClass(className);
     }
 
@@ -77,8 +143,27 @@ public final class JsonUtils {
         convertResult(classLoader, message.getResult());
     }
 
+    /**
+     * returns a deep copy of the value, made the way it would be serialized and read back. Strings, numbers,
+     * booleans and enums are immutable and returned as they are.
+     */
+    public static Object copy(Object value) {
+        if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof Enum) {
+            return value;
+        }
+        try {
+            TokenBuffer buffer = new TokenBuffer(MAPPER, false);
+            MAPPER.writeValue(buffer, value);
+            return READERS.get(value.getClass()).readValue(buffer.asParser());
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
     public static <T> T convertArgument(Object object, Class<T> clazz) {
-        return MAPPER.convertValue(object, clazz);
+        return (T) convertValue(object, clazz);
     }
     
     private JsonUtils() {
@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.util;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * runs tasks on a shared executor, but never more than maxConcurrency of them at a time. Further tasks wait in an
+ * unbounded queue until a running task has finished.
+ */
+public class LimitedExecutor implements Executor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LimitedExecutor.class);
+
+    private final Executor delegate;
+    private final int maxConcurrency;
+
+    private final ConcurrentLinkedDeque<Runnable> queue = new ConcurrentLinkedDeque<Runnable>();
+    private final AtomicInteger running = new AtomicInteger();
+
+    public LimitedExecutor(Executor delegate, int maxConcurrency) {
+        this.delegate = delegate;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        queue.add(task);
+        if (!schedule() && queue.removeLastOccurrence(task)) {
+            throw new RejectedExecutionException("the task was rejected by the underlying executor");
+        }
+    }
+
+    /**
+     * starts queued tasks while there are free slots. If the underlying executor rejects a task, the task is put
+     * back at the head of the queue, to be retried when a running task has finished, and false is returned.
+     */
+    private boolean schedule() {
+        while (!queue.isEmpty()) {
+            int current = running.get();
+            if (current >= maxConcurrency) {
+                return true;
+            }
+            if (!running.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            final Runnable task = queue.poll();
+            if (task == null) {
+                running.decrementAndGet();
+                continue;
+            }
+            try {
+                delegate.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            task.run();
+                        } finally {
+                            running.decrementAndGet();
+                            schedule();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                running.decrementAndGet();
+                queue.addFirst(task);
+                LOGGER.error("task was rejected by the underlying executor", e);
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.util;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * correlates replies with the calls waiting for them. Every call gets a one-shot slot that is removed as soon as it
+ * is completed, times out or is cancelled, so the table never holds more than the configured number of calls.
+ */
+public class PendingCalls<V> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PendingCalls.class);
+
+    private static final class PendingCall<V> extends AbstractFuture<V> {
+        private final boolean timed;
+        private final long deadline;
+
+        private PendingCall(boolean timed, long deadline) {
+            this.timed = timed;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected boolean set(V value) {
+            return super.set(value);
+        }
+
+        @Override
+        protected boolean setException(Throwable throwable) {
+            return super.setException(throwable);
+        }
+    }
+
+    private final ConcurrentMap<String, PendingCall<V>> calls = new ConcurrentHashMap<String, PendingCall<V>>();
+    private final Semaphore capacity;
+    private final ScheduledExecutorService sweeper;
+
+    public PendingCalls(int maxPendingCalls, long sweepInterval, TimeUnit unit) {
+        capacity = new Semaphore(maxPendingCalls);
+        sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("loom-pending-calls-sweeper-%d").setDaemon(true).build());
+        sweeper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sweep();
+            }
+        }, sweepInterval, sweepInterval, unit);
+    }
+
+    /**
+     * registers a call that has not been sent yet. A timeout of 0 means the call waits for its reply forever.
+     *
+     * @throws IllegalStateException if the maximum number of pending calls is reached
+     */
+    public ListenableFuture<V> register(String id, long timeout, TimeUnit unit) {
+        if (!capacity.tryAcquire()) {
+            throw new IllegalStateException("too many pending calls, rejecting " + id);
+        }
+        boolean timed = timeout > 0;
+        long deadline = timed ? System.nanoTime() + unit.toNanos(timeout) : 0;
+        PendingCall<V> call = new PendingCall<V>(timed, deadline);
+        if (calls.putIfAbsent(id, call) != null) {
+            capacity.release();
+            throw new IllegalStateException("there is already a pending call with id " + id);
+        }
+        return call;
+    }
+
+    /**
+     * completes the call with the given id. Returns false if there is no such call, e.g. because the reply arrived
+     * after the call timed out.
+     */
+    public boolean complete(String id, V value) {
+        PendingCall<V> call = remove(id);
+        if (call == null) {
+            LOGGER.debug("dropping late or unknown reply for call {}", id);
+            return false;
+        }
+        return call.set(value);
+    }
+
+    public boolean fail(String id, Throwable cause) {
+        PendingCall<V> call = remove(id);
+        return call != null && call.setException(cause);
+    }
+
+    public void failAll(Throwable cause) {
+        for (String id : calls.keySet()) {
+            fail(id, cause);
+        }
+    }
+
+    public int size() {
+        return calls.size();
+    }
+
+    public void close() {
+        sweeper.shutdownNow();
+        failAll(new IllegalStateException("pending calls have been closed"));
+    }
+
+    private PendingCall<V> remove(String id) {
+        PendingCall<V> call = calls.remove(id);
+        if (call != null) {
+            capacity.release();
+        }
+        return call;
+    }
+
+    void sweep() {
+        long now = System.nanoTime();
+        Iterator<Entry<String, PendingCall<V>>> iterator = calls.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry<String, PendingCall<V>> entry = iterator.next();
+            PendingCall<V> call = entry.getValue();
+            boolean expired = call.timed && now - call.deadline >= 0;
+            if (!expired && !call.isDone()) {
+                continue;
+            }
+            if (!calls.remove(entry.getKey(), call)) {
+                continue;
+            }
+            capacity.release();
+            if (expired) {
+                LOGGER.debug("call {} timed out", entry.getKey());
+                call.setException(new TimeoutException("no reply received for call " + entry.getKey()));
+            }
+        }
+    }
+}
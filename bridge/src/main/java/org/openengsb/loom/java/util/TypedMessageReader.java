@@ -0,0 +1,290 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.openengsb.core.api.remote.MethodCall;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.core.api.remote.MethodResult.ReturnType;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * reads messages while binding call arguments and results directly to the classes named in the message, instead of
+ * building generic maps first and converting them with {@link JsonUtils} afterwards. Values that appear before the
+ * class names they depend on are kept as token buffers until the class names are known.
+ */
+public final class TypedMessageReader {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TypedMessageReader.class);
+
+    private static final TypeReference<List<String>> STRING_LIST = new TypeReference<List<String>>() {
+    };
+    private static final TypeReference<Map<String, String>> STRING_MAP = new TypeReference<Map<String, String>>() {
+    };
+
+    public static MethodCallMessage readMethodCallMessage(ObjectMapper mapper, JsonParser parser,
+            ClassLoader classLoader) throws IOException {
+        startObject(parser);
+        MethodCall methodCall = null;
+        TokenBuffer remainder = new TokenBuffer(mapper, false);
+        remainder.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("methodCall".equals(field)) {
+                methodCall = readMethodCall(mapper, parser, classLoader);
+            } else {
+                remainder.writeFieldName(field);
+                remainder.copyCurrentStructure(parser);
+            }
+        }
+        remainder.writeEndObject();
+        MethodCallMessage message = mapper.readValue(remainder.asParser(), MethodCallMessage.class);
+        message.setMethodCall(methodCall);
+        return message;
+    }
+
+    public static MethodResultMessage readMethodResultMessage(ObjectMapper mapper, JsonParser parser,
+            ClassLoader classLoader) throws IOException {
+        startObject(parser);
+        MethodResult result = null;
+        TokenBuffer remainder = new TokenBuffer(mapper, false);
+        remainder.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("result".equals(field)) {
+                result = readMethodResult(mapper, parser, classLoader);
+            } else {
+                remainder.writeFieldName(field);
+                remainder.copyCurrentStructure(parser);
+            }
+        }
+        remainder.writeEndObject();
+        MethodResultMessage message = mapper.readValue(remainder.asParser(), MethodResultMessage.class);
+        message.setResult(result);
+        return message;
+    }
+
+    /**
+     * reads a batch of calls, i.e. a JSON array of call messages
+     */
+    public static List<MethodCallMessage> readMethodCallMessages(ObjectMapper mapper, JsonParser parser,
+            ClassLoader classLoader) throws IOException {
+        startArray(parser);
+        List<MethodCallMessage> messages = new ArrayList<MethodCallMessage>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            messages.add(readMethodCallMessage(mapper, parser, classLoader));
+        }
+        return messages;
+    }
+
+    public static List<MethodResultMessage> readMethodResultMessages(ObjectMapper mapper, JsonParser parser,
+            ClassLoader classLoader) throws IOException {
+        startArray(parser);
+        List<MethodResultMessage> messages = new ArrayList<MethodResultMessage>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            messages.add(readMethodResultMessage(mapper, parser, classLoader));
+        }
+        return messages;
+    }
+
+    private static MethodCall readMethodCall(ObjectMapper mapper, JsonParser parser, ClassLoader classLoader)
+        throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        MethodCall methodCall = new MethodCall();
+        List<String> classes = null;
+        List<Object> args = null;
+        List<TokenBuffer> bufferedArgs = null;
+        TokenBuffer remainder = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("methodName".equals(field)) {
+                methodCall.setMethodName(parser.getValueAsString());
+            } else if ("metaData".equals(field)) {
+                Map<String, String> metaData = mapper.readValue(parser, STRING_MAP);
+                methodCall.setMetaData(metaData);
+            } else if ("classes".equals(field)) {
+                classes = mapper.readValue(parser, STRING_LIST);
+                methodCall.setClasses(classes);
+            } else if ("args".equals(field) && token == JsonToken.START_ARRAY) {
+                if (classes != null) {
+                    args = readArgs(mapper, parser, classes, classLoader);
+                } else {
+                    bufferedArgs = bufferArgs(mapper, parser);
+                }
+            } else {
+                if (remainder == null) {
+                    remainder = new TokenBuffer(mapper, false);
+                    remainder.writeStartObject();
+                }
+                LOGGER.debug("passing field {} of the method call to the mapper", field);
+                remainder.writeFieldName(field);
+                remainder.copyCurrentStructure(parser);
+            }
+        }
+        if (remainder != null) {
+            remainder.writeEndObject();
+            mapper.readerForUpdating(methodCall).readValue(remainder.asParser());
+        }
+        if (bufferedArgs != null) {
+            args = new ArrayList<Object>(bufferedArgs.size());
+            for (int i = 0; i < bufferedArgs.size(); i++) {
+                args.add(readValue(mapper, bufferedArgs.get(i).asParser(), getClassName(classes, i), classLoader));
+            }
+        }
+        if (args != null) {
+            methodCall.setArgs(args.toArray());
+        }
+        return methodCall;
+    }
+
+    private static MethodResult readMethodResult(ObjectMapper mapper, JsonParser parser, ClassLoader classLoader)
+        throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        String type = null;
+        String className = null;
+        boolean hasArg = false;
+        Object arg = null;
+        TokenBuffer bufferedArg = null;
+        TokenBuffer remainder = new TokenBuffer(mapper, false);
+        remainder.writeStartObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("arg".equals(field)) {
+                hasArg = true;
+                if (type != null && className != null) {
+                    arg = readResultArg(mapper, parser, type, className, classLoader);
+                } else {
+                    bufferedArg = new TokenBuffer(mapper, false);
+                    bufferedArg.copyCurrentStructure(parser);
+                }
+                continue;
+            }
+            if ("type".equals(field)) {
+                type = parser.getValueAsString();
+            } else if ("className".equals(field)) {
+                className = parser.getValueAsString();
+            }
+            remainder.writeFieldName(field);
+            remainder.copyCurrentStructure(parser);
+        }
+        remainder.writeEndObject();
+        MethodResult result = mapper.readValue(remainder.asParser(), MethodResult.class);
+        if (bufferedArg != null) {
+            arg = readResultArg(mapper, bufferedArg.asParser(), type, className, classLoader);
+        }
+        if (hasArg) {
+            result.setArg(arg);
+        }
+        return result;
+    }
+
+    private static Object readResultArg(ObjectMapper mapper, JsonParser parser, String type, String className,
+            ClassLoader classLoader) throws IOException {
+        if (ReturnType.Object.name().equals(type)) {
+            return readValue(mapper, parser, className, classLoader);
+        }
+        return readValue(mapper, parser, null, classLoader);
+    }
+
+    private static List<Object> readArgs(ObjectMapper mapper, JsonParser parser, List<String> classes,
+            ClassLoader classLoader) throws IOException {
+        List<Object> args = new ArrayList<Object>(classes.size());
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            args.add(readValue(mapper, parser, getClassName(classes, args.size()), classLoader));
+        }
+        return args;
+    }
+
+    private static List<TokenBuffer> bufferArgs(ObjectMapper mapper, JsonParser parser) throws IOException {
+        List<TokenBuffer> args = new ArrayList<TokenBuffer>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            TokenBuffer buffer = new TokenBuffer(mapper, false);
+            buffer.copyCurrentStructure(parser);
+            args.add(buffer);
+        }
+        return args;
+    }
+
+    private static Object readValue(ObjectMapper mapper, JsonParser parser, String className,
+            ClassLoader classLoader) throws IOException {
+        if (parser.getCurrentToken() == null) {
+            parser.nextToken();
+        }
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (className != null && classLoader != null) {
+            try {
+                return JsonUtils.getReader(JsonUtils.findType(classLoader, className)).readValue(parser);
+            } catch (ClassNotFoundException e) {
+                LOGGER.error("could not resolve type " + className, e);
+            }
+        }
+        return mapper.readValue(parser, Object.class);
+    }
+
+    private static String getClassName(List<String> classes, int index) {
+        if (classes == null || index >= classes.size()) {
+            return null;
+        }
+        return classes.get(index);
+    }
+
+    private static void startObject(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == null) {
+            parser.nextToken();
+        }
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException("expected an object", parser.getCurrentLocation());
+        }
+    }
+
+    private static void startArray(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == null) {
+            parser.nextToken();
+        }
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException("expected an array", parser.getCurrentLocation());
+        }
+    }
+
+    private TypedMessageReader() {
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openengsb.core.api.remote.MethodCall;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.core.api.remote.MethodResultMessage;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class BatchingRequestHandlerTest {
+
+    private static class RecordingRequestHandler implements RequestHandler {
+        private final List<Integer> batchSizes = new ArrayList<Integer>();
+
+        @Override
+        public MethodResultMessage process(MethodCallMessage request) throws Exception {
+            return processAsync(request).get();
+        }
+
+        @Override
+        public synchronized ListenableFuture<MethodResultMessage> processAsync(MethodCallMessage request) {
+            batchSizes.add(1);
+            return Futures.immediateFuture(answer(request));
+        }
+
+        @Override
+        public synchronized ListenableFuture<List<MethodResultMessage>> processBatch(
+                List<MethodCallMessage> requests) {
+            batchSizes.add(requests.size());
+            List<MethodResultMessage> results = new ArrayList<MethodResultMessage>();
+            for (MethodCallMessage request : requests) {
+                results.add(answer(request));
+            }
+            return Futures.immediateFuture(results);
+        }
+
+        private MethodResultMessage answer(MethodCallMessage request) {
+            return new MethodResultMessage(MethodResult.newVoidResult(), request.getCallId());
+        }
+
+        private synchronized List<Integer> getBatchSizes() {
+            return new ArrayList<Integer>(batchSizes);
+        }
+    }
+
+    private ScheduledExecutorService scheduler;
+    private RecordingRequestHandler delegate;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        delegate = new RecordingRequestHandler();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testFullBatch_shouldBeSentAtOnceAndResultsMatchCalls() throws Exception {
+        BatchingRequestHandler handler = new BatchingRequestHandler(delegate, 3, 1, TimeUnit.HOURS, scheduler);
+        List<Future<MethodResultMessage>> results = new ArrayList<Future<MethodResultMessage>>();
+        for (int i = 0; i < 3; i++) {
+            results.add(handler.processAsync(createRequest("call-" + i)));
+        }
+        assertThat(delegate.getBatchSizes(), equalTo(asList(3)));
+        for (int i = 0; i < 3; i++) {
+            assertThat(results.get(i).get(1, TimeUnit.SECONDS).getCallId(), equalTo("call-" + i));
+        }
+    }
+
+    @Test
+    public void testPartialBatch_shouldBeSentAfterDelay() throws Exception {
+        BatchingRequestHandler handler = new BatchingRequestHandler(delegate, 10, 10, TimeUnit.MILLISECONDS,
+            scheduler);
+        Future<MethodResultMessage> first = handler.processAsync(createRequest("first"));
+        Future<MethodResultMessage> second = handler.processAsync(createRequest("second"));
+        assertThat(second.get(1, TimeUnit.SECONDS).getCallId(), equalTo("second"));
+        assertThat(first.get(1, TimeUnit.SECONDS).getCallId(), equalTo("first"));
+        assertThat(delegate.getBatchSizes(), equalTo(asList(2)));
+    }
+
+    @Test
+    public void testSingleCall_shouldNotBeWrappedInBatch() throws Exception {
+        BatchingRequestHandler handler = new BatchingRequestHandler(delegate, 10, 1, TimeUnit.HOURS, scheduler);
+        Future<MethodResultMessage> result = handler.processAsync(createRequest("single"));
+        handler.flush();
+        assertThat(result.get(1, TimeUnit.SECONDS).getCallId(), equalTo("single"));
+        assertThat(delegate.getBatchSizes(), equalTo(asList(1)));
+    }
+
+    private static List<Integer> asList(int... values) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    private static MethodCallMessage createRequest(String callId) {
+        MethodCallMessage request = new MethodCallMessage(new MethodCall());
+        request.setCallId(callId);
+        return request;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openengsb.core.api.remote.MethodCall;
+
+public class CallTemplateTest {
+
+    public interface TestService {
+        void doSomething(Number value, int count);
+
+        @OneWay
+        void notify(String event);
+    }
+
+    private CallTemplate template;
+
+    @Before
+    public void setUp() throws Exception {
+        Method method = TestService.class.getMethod("doSomething", Number.class, int.class);
+        template = new CallTemplate(method, Collections.singletonMap("contextId", "root"), null);
+    }
+
+    @Test
+    public void testCreateMethodCall_shouldUseWrapperForPrimitive() throws Exception {
+        MethodCall methodCall = template.createMethodCall(new Object[]{ null, 42 });
+        assertThat(methodCall.getMethodName(), equalTo("doSomething"));
+        assertThat(methodCall.getClasses(), contains(Number.class.getName(), Integer.class.getName()));
+    }
+
+    @Test
+    public void testCreateMethodCallWithDeclaredTypes_shouldShareClassList() throws Exception {
+        MethodCall first = template.createMethodCall(new Object[]{ null, 1 });
+        MethodCall second = template.createMethodCall(new Object[]{ null, 2 });
+        assertThat(first.getClasses(), sameInstance(second.getClasses()));
+    }
+
+    @Test
+    public void testCreateMethodCallWithSubclassArgument_shouldUseActualClass() throws Exception {
+        MethodCall methodCall = template.createMethodCall(new Object[]{ 1L, 2 });
+        assertThat(methodCall.getClasses(), contains(Long.class.getName(), Integer.class.getName()));
+        assertThat(template.createMethodCall(new Object[]{ null, 2 }).getClasses(),
+            contains(Number.class.getName(), Integer.class.getName()));
+    }
+
+    @Test
+    public void testOneWayAnnotation_shouldBeDetected() throws Exception {
+        Map<String, String> metaData = Collections.emptyMap();
+        assertThat(new CallTemplate(TestService.class.getMethod("notify", String.class), metaData, null).isOneWay(),
+            equalTo(true));
+        assertThat(template.isOneWay(), equalTo(false));
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openengsb.core.api.remote.MethodCall;
+import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.core.api.remote.MethodResult.ReturnType;
+import org.openengsb.domain.example.model.ExampleRequestModel;
+import org.openengsb.domain.example.model.ExampleResponseModel;
+
+public class LocalRequestHandlerTest {
+
+    private LocalRequestHandler requestHandler;
+
+    @Before
+    public void setUp() throws Exception {
+        requestHandler = new LocalRequestHandler(new ExampleConnector());
+    }
+
+    @Test
+    public void testProcessCallWithStringArg_shouldReturnResult() throws Exception {
+        MethodCall call = createMethodCall("doSomethingWithMessage", "foo", String.class.getName());
+        MethodResult result = requestHandler.process(call);
+        assertThat(result.getType(), equalTo(ReturnType.Object));
+        assertThat((String) result.getArg(), equalTo("42"));
+    }
+
+    @Test
+    public void testProcessCallWithModelAsMap_shouldConvertArgument() throws Exception {
+        Map<String, Object> model = new HashMap<String, Object>();
+        model.put("name", "foo");
+        MethodCall call = createMethodCall("doSomethingWithModel", model, ExampleRequestModel.class.getName());
+        MethodResult result = requestHandler.process(call);
+        assertThat(((ExampleResponseModel) result.getArg()).getResult(), equalTo("foo"));
+    }
+
+    @Test
+    public void testProcessCallWithUnknownMethod_shouldReturnExceptionResult() throws Exception {
+        MethodCall call = createMethodCall("doesNotExist", "foo", String.class.getName());
+        MethodResult result = requestHandler.process(call);
+        assertThat(result.getType(), equalTo(ReturnType.Exception));
+    }
+
+    private static MethodCall createMethodCall(String methodName, Object arg, String className) {
+        MethodCall call = new MethodCall();
+        call.setMethodName(methodName);
+        call.setArgs(new Object[]{ arg });
+        call.setClasses(Arrays.asList(className));
+        return call;
+    }
+}
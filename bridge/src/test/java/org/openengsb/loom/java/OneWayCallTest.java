@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+import org.openengsb.connector.usernamepassword.Password;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.loom.java.metrics.BridgeMetrics;
+import org.openengsb.loom.java.metrics.OutgoingCallMetrics;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class OneWayCallTest {
+
+    public interface PublishService {
+        @OneWay
+        void publish(String message);
+    }
+
+    /**
+     * hands one-way calls to the given future, fails the test on calls waiting for a result
+     */
+    private static class OneWayTransport extends StubProtocolHandler {
+        private final ListenableFuture<MethodResultMessage> sent;
+        private final List<MethodCallMessage> requests = new CopyOnWriteArrayList<MethodCallMessage>();
+
+        OneWayTransport(ListenableFuture<MethodResultMessage> sent) {
+            this.sent = sent;
+        }
+
+        @Override
+        public MethodResultMessage process(MethodCallMessage request) {
+            throw new AssertionError("one-way calls must not wait for a result");
+        }
+
+        @Override
+        public ListenableFuture<MethodResultMessage> processAsync(MethodCallMessage request) {
+            requests.add(request);
+            return sent;
+        }
+    }
+
+    private final List<Throwable> deliveryFailures = new CopyOnWriteArrayList<Throwable>();
+
+    @Test
+    public void testOneWayCall_shouldBeSentWithoutExpectingAnAnswer() throws Exception {
+        OneWayTransport transport = new OneWayTransport(Futures.<MethodResultMessage>immediateFuture(null));
+        createFactory(transport).getRemoteProxy(PublishService.class).publish("a");
+        assertThat(transport.requests.size(), equalTo(1));
+        assertThat(transport.requests.get(0).isAnswer(), equalTo(false));
+        assertThat(deliveryFailures.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    public void testFailedOneWayCall_shouldBeReportedAndCountedAsError() throws Exception {
+        IOException failure = new IOException("broker unavailable");
+        OneWayTransport transport =
+            new OneWayTransport(Futures.<MethodResultMessage>immediateFailedFuture(failure));
+        OutgoingCallMetrics metrics = BridgeMetrics.getDefault().getOutgoing(PublishService.class, "publish");
+        long errors = metrics.getErrors();
+        createFactory(transport).getRemoteProxy(PublishService.class).publish("a");
+        assertThat(deliveryFailures.size(), equalTo(1));
+        assertThat(deliveryFailures.get(0), sameInstance((Throwable) failure));
+        assertThat(metrics.getErrors(), equalTo(errors + 1));
+        assertThat(OutgoingCallMetrics.current(), nullValue());
+    }
+
+    private ProxyConnectorFactory createFactory(ProtocolHandler transport) {
+        ProxyConnectorFactory factory = new ProxyConnectorFactory(transport, "admin", new Password("password"));
+        factory.setDeliveryFailureListener(new DeliveryFailureListener() {
+            @Override
+            public void deliveryFailed(MethodCallMessage request, Throwable cause) {
+                deliveryFailures.add(cause);
+            }
+        });
+        return factory;
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openengsb.connector.usernamepassword.Password;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResultMessage;
+
+public class ResultCacheTest {
+
+    public interface LookupService {
+        @Cacheable
+        String lookup(String key);
+
+        String read(String key);
+
+        void write(String key);
+    }
+
+    /**
+     * answers every call with the name of the method and counts the calls it received
+     */
+    private static class CountingProtocolHandler extends StubProtocolHandler {
+        private int calls;
+
+        @Override
+        public synchronized MethodResultMessage process(MethodCallMessage request) {
+            calls++;
+            return answer(request, request.getMethodCall().getMethodName() + "-" + calls);
+        }
+    }
+
+    private CountingProtocolHandler server;
+    private ResultCache cache;
+    private LookupService service;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new CountingProtocolHandler();
+        ProxyConnectorFactory factory = new ProxyConnectorFactory(server, "admin", new Password("password"));
+        cache = new ResultCache(100, 1, TimeUnit.HOURS);
+        factory.setResultCache(cache);
+        service = factory.getRemoteProxy(LookupService.class);
+    }
+
+    @Test
+    public void testCallCacheableMethodTwice_shouldCallRemoteOnce() throws Exception {
+        assertThat(service.lookup("a"), equalTo("lookup-1"));
+        assertThat(service.lookup("a"), equalTo("lookup-1"));
+        assertThat(server.calls, equalTo(1));
+        assertThat(cache.getHitCount(), equalTo(1L));
+        assertThat(cache.getMissCount(), equalTo(1L));
+    }
+
+    @Test
+    public void testCallWithDifferentArguments_shouldNotShareEntries() throws Exception {
+        service.lookup("a");
+        service.lookup("b");
+        assertThat(server.calls, equalTo(2));
+    }
+
+    @Test
+    public void testCallUncachedMethod_shouldAlwaysCallRemote() throws Exception {
+        service.read("a");
+        service.read("a");
+        assertThat(server.calls, equalTo(2));
+    }
+
+    @Test
+    public void testAddCacheableMethod_shouldCacheResults() throws Exception {
+        cache.addCacheableMethod(LookupService.class, "read");
+        service.read("a");
+        service.read("a");
+        assertThat(server.calls, equalTo(1));
+    }
+
+    @Test
+    public void testAddVoidMethod_shouldNotSkipCalls() throws Exception {
+        cache.addCacheableMethod(LookupService.class, "write");
+        service.write("a");
+        service.write("a");
+        assertThat(server.calls, equalTo(2));
+    }
+
+    @Test
+    public void testInvalidate_shouldCallRemoteAgain() throws Exception {
+        service.lookup("a");
+        cache.invalidate(LookupService.class, "lookup");
+        assertThat(service.lookup("a"), equalTo("lookup-2"));
+    }
+}
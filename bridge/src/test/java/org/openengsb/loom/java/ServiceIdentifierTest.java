@@ -0,0 +1,62 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.openengsb.core.api.ConnectorManager;
+import org.openengsb.core.api.remote.ProxyConnectorRegistry;
+
+public class ServiceIdentifierTest {
+
+    @Test
+    public void testEqualIdentifiers_shouldBeEqualAndHaveSameHashCode() throws Exception {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("location.root", "foo");
+        ServiceIdentifier first = new ServiceIdentifier(ConnectorManager.class, properties, null);
+        ServiceIdentifier second =
+            new ServiceIdentifier(ConnectorManager.class, new HashMap<String, Object>(properties), null);
+        assertThat(first, equalTo(second));
+        assertThat(first.hashCode(), equalTo(second.hashCode()));
+    }
+
+    @Test
+    public void testDifferentIdentifiers_shouldNotBeEqual() throws Exception {
+        Map<String, Object> noProperties = Collections.emptyMap();
+        ServiceIdentifier manager = new ServiceIdentifier(ConnectorManager.class, noProperties, null);
+        assertThat(manager, not(equalTo(new ServiceIdentifier(ProxyConnectorRegistry.class, noProperties, null))));
+        assertThat(manager, not(equalTo(new ServiceIdentifier(ConnectorManager.class, noProperties, "pid"))));
+    }
+
+    @Test
+    public void testChangePropertiesAfterCreation_shouldNotChangeFilter() throws Exception {
+        Map<String, Object> properties = new HashMap<String, Object>();
+        properties.put("location.root", "foo");
+        ServiceIdentifier identifier = new ServiceIdentifier(ConnectorManager.class, properties, null);
+        properties.put("location.root", "bar");
+        assertThat(identifier.getServiceFilter(),
+            equalTo("(&(objectClass=" + ConnectorManager.class.getName() + ")(location.root=foo))"));
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.core.api.remote.MethodResult.ReturnType;
+import org.openengsb.core.api.remote.MethodResultMessage;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * stands in for the transport of proxies in tests and benchmarks: every outgoing call is answered by
+ * {@link #process} on the calling thread. Registering connectors is not supported.
+ */
+public abstract class StubProtocolHandler implements ProtocolHandler, RequestHandler {
+
+    @Override
+    public abstract MethodResultMessage process(MethodCallMessage request);
+
+    @Override
+    public ListenableFuture<MethodResultMessage> processAsync(MethodCallMessage request) {
+        return Futures.immediateFuture(process(request));
+    }
+
+    @Override
+    public ListenableFuture<List<MethodResultMessage>> processBatch(List<MethodCallMessage> requests) {
+        List<MethodResultMessage> results = new ArrayList<MethodResultMessage>(requests.size());
+        for (MethodCallMessage request : requests) {
+            results.add(process(request));
+        }
+        return Futures.immediateFuture(results);
+    }
+
+    /**
+     * answers the request with the given object
+     */
+    protected static MethodResultMessage answer(MethodCallMessage request, Object value) {
+        MethodResult result = new MethodResult(value, ReturnType.Object);
+        result.setClassName(value.getClass().getName());
+        return new MethodResultMessage(result, request.getCallId());
+    }
+
+    @Override
+    public String registerRequestHandler(LocalRequestHandler requestHandler, String uuid) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unregisterRequestHandler(String uuid) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public RequestHandler createOutgoingRequestHandler() {
+        return this;
+    }
+
+    @Override
+    public RequestHandler createOutgoingRequestHandler(ClassLoader resultClassLoader) {
+        return this;
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    @Override
+    public String getPortId() {
+        return "local";
+    }
+}
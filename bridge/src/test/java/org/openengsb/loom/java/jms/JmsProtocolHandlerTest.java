@@ -0,0 +1,452 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.jms;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openengsb.connector.usernamepassword.Password;
+import org.openengsb.core.api.remote.MethodCall;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.loom.java.ExampleConnector;
+import org.openengsb.loom.java.LocalRequestHandler;
+import org.openengsb.loom.java.OneWay;
+import org.openengsb.loom.java.ProxyConnectorFactory;
+import org.openengsb.loom.java.RemoteException;
+import org.openengsb.loom.java.codec.SmileCodec;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * sends calls from one protocol handler to connectors registered on the same or another one through an embedded
+ * broker. A plain consumer stands in for the OpenEngSB side: it forwards everything sent to "receive" unchanged to
+ * the queue of the connector named by the service.pid of the call's service filter, or to "example" if there is
+ * none, so the reply has to find its way back by reply-to and correlation id alone.
+ */
+public class JmsProtocolHandlerTest {
+
+    private static final String BROKER_URL = "vm://loom-jms-test?broker.persistent=false&broker.useJmx=false";
+    private static final String CONNECTOR_ID = "example";
+    private static final Pattern SERVICE_PID = Pattern.compile("service\\.pid=([^)]+)");
+
+    public interface EchoService {
+        String echo(String message);
+
+        String fail(String message);
+    }
+
+    public interface PublishService {
+        @OneWay
+        void publish(String message);
+    }
+
+    /**
+     * takes published messages only once it is released
+     */
+    public static class BlockingPublisher implements PublishService {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final BlockingQueue<String> published = new LinkedBlockingQueue<String>();
+
+        @Override
+        public void publish(String message) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            published.add(message);
+        }
+    }
+
+    public interface AsyncEchoService {
+        ListenableFuture<String> echo(String message);
+
+        ListenableFuture<String> fail(String message);
+    }
+
+    /**
+     * answers with its name and the message
+     */
+    public static class EchoConnector implements EchoService {
+        private final String name;
+
+        public EchoConnector(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String echo(String message) {
+            return name + ":" + message;
+        }
+
+        @Override
+        public String fail(String message) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    /**
+     * answers calls by calling another connector, like connectors calling OpenEngSB services do
+     */
+    public static class RelayConnector implements EchoService {
+        private final EchoService target;
+
+        public RelayConnector(EchoService target) {
+            this.target = target;
+        }
+
+        @Override
+        public String echo(String message) {
+            return target.echo(message);
+        }
+
+        @Override
+        public String fail(String message) {
+            return target.fail(message);
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, String> connectorQueues = new ConcurrentHashMap<String, String>();
+    private final BlockingQueue<Message> forwardedCalls = new LinkedBlockingQueue<Message>();
+    private Connection forwarderConnection;
+    private JmsProtocolHandler connectorSide;
+    private JmsProtocolHandler callerSide;
+
+    @Before
+    public void setUp() throws Exception {
+        forwarderConnection = new ActiveMQConnectionFactory(BROKER_URL).createConnection();
+        forwarderConnection.start();
+        final Session session = forwarderConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        final MessageProducer producer = session.createProducer(null);
+        MessageConsumer consumer = session.createConsumer(session.createQueue("receive"));
+        consumer.setMessageListener(new MessageListener() {
+            @Override
+            public void onMessage(Message message) {
+                try {
+                    forwardedCalls.add(message);
+                    producer.send(session.createQueue(findConnectorQueue(message)), message);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (callerSide != null) {
+            callerSide.destroy();
+        }
+        if (connectorSide != null) {
+            connectorSide.destroy();
+        }
+        forwarderConnection.close();
+    }
+
+    @Test
+    public void testCallThroughBroker_shouldBeAnsweredByRemoteConnector() throws Exception {
+        start(createConfiguration());
+        MethodResultMessage result = callerSide.createOutgoingRequestHandler().process(createRequest("1", "foo"));
+        assertThat((String) result.getResult().getArg(), equalTo("42"));
+        assertThat(result.getCallId(), equalTo("1"));
+    }
+
+    @Test
+    public void testBatchEnvelopeThroughBroker_shouldBeAnsweredWithAllResults() throws Exception {
+        JmsConfiguration configuration = createConfiguration();
+        configuration.setBatchEnvelopes(true);
+        start(configuration);
+        List<MethodCallMessage> requests = Arrays.asList(createRequest("1", "foo"), createRequest("2", "bar"));
+        List<MethodResultMessage> results =
+            callerSide.createOutgoingRequestHandler().processBatch(requests).get(10, TimeUnit.SECONDS);
+        assertThat(results.size(), equalTo(2));
+        assertThat(results.get(0).getCallId(), equalTo("1"));
+        assertThat(results.get(1).getCallId(), equalTo("2"));
+        assertThat((String) results.get(1).getResult().getArg(), equalTo("42"));
+    }
+
+    @Test
+    public void testJsonTextMessageWithSmileCodec_shouldBeReadAsJson() throws Exception {
+        JmsConfiguration configuration = createConfiguration();
+        configuration.setCodec(new SmileCodec());
+        start(configuration);
+        Session session = forwarderConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        TemporaryQueue replyQueue = session.createTemporaryQueue();
+        TextMessage request =
+            session.createTextMessage(new ObjectMapper().writeValueAsString(createRequest("1", "foo")));
+        request.setJMSReplyTo(replyQueue);
+        session.createProducer(session.createQueue(CONNECTOR_ID)).send(request);
+        Message reply = session.createConsumer(replyQueue).receive(10000);
+        MethodResultMessage result = connectorSide.unmarshal(reply, MethodResultMessage.class);
+        assertThat((String) result.getResult().getArg(), equalTo("42"));
+        assertThat(result.getCallId(), equalTo("1"));
+    }
+
+    @Test
+    public void testConnectorCallingRemoteServiceWhileDispatchIsSaturated_shouldGetItsReply() throws Exception {
+        JmsConfiguration connectorConfiguration = createConfiguration();
+        connectorConfiguration.setDispatchThreads(1);
+        connectorConfiguration.setMaxQueuedCalls(1);
+        start(connectorConfiguration, createConfiguration());
+        register(callerSide, "echo", new EchoConnector("echo"));
+        register(connectorSide, "relay", new RelayConnector(createFactory(connectorSide)
+            .getRemoteProxy(EchoService.class, "echo")));
+        final EchoService relay = createFactory(callerSide).getRemoteProxy(EchoService.class, "relay");
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < 3; i++) {
+                final String message = "message-" + i;
+                results.add(callers.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return relay.echo(message);
+                    }
+                }));
+            }
+            for (int i = 0; i < 3; i++) {
+                assertThat(results.get(i).get(10, TimeUnit.SECONDS), equalTo("echo:message-" + i));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testTwoConnectorsMultiplexed_shouldEachGetTheirCalls() throws Exception {
+        JmsConfiguration configuration = createConfiguration();
+        configuration.setMultiplexConnectors(true);
+        start(configuration, createConfiguration());
+        String first = register(connectorSide, "first", new EchoConnector("first"));
+        String second = register(connectorSide, "second", new EchoConnector("second"));
+        assertThat(first, startsWith("vm://loom-jms-test?"));
+        assertThat(second, startsWith("vm://loom-jms-test?"));
+        ProxyConnectorFactory factory = createFactory(callerSide);
+        assertThat(factory.getRemoteProxy(EchoService.class, "first").echo("a"), equalTo("first:a"));
+        assertThat(factory.getRemoteProxy(EchoService.class, "second").echo("b"), equalTo("second:b"));
+        assertThat(factory.getRemoteProxy(EchoService.class, "first").echo("c"), equalTo("first:c"));
+    }
+
+    @Test
+    public void testThreeConnections_shouldSpreadConnectorsAndCallsAndCloseAllOnDestroy() throws Exception {
+        int clients = getBrokerClientCount();
+        JmsConfiguration connectorConfiguration = createConfiguration();
+        connectorConfiguration.setConnections(3);
+        connectorConfiguration.setMultiplexConnectors(true);
+        JmsConfiguration callerConfiguration = createConfiguration();
+        callerConfiguration.setConnections(3);
+        start(connectorConfiguration, callerConfiguration);
+        assertThat(getBrokerClientCount(), equalTo(clients + 6));
+        List<String> connectorIds = Arrays.asList("first", "second", "third", "fourth");
+        for (int i = 0; i < connectorIds.size(); i++) {
+            String connectorId = connectorIds.get(i);
+            String destination = register(connectorSide, connectorId, new EchoConnector(connectorId));
+            assertThat(destination, containsString(".CONNECTORS." + i % 3 + "." + connectorId));
+        }
+        ProxyConnectorFactory factory = createFactory(callerSide);
+        for (int round = 0; round < 3; round++) {
+            for (String connectorId : connectorIds) {
+                EchoService echo = factory.getRemoteProxy(EchoService.class, connectorId);
+                assertThat(echo.echo("call" + round), equalTo(connectorId + ":call" + round));
+            }
+        }
+        assertThat(callerSide.getPendingCallCount(), equalTo(0));
+        callerSide.destroy();
+        connectorSide.destroy();
+        callerSide = null;
+        connectorSide = null;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (getBrokerClientCount() > clients && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(getBrokerClientCount(), equalTo(clients));
+    }
+
+    @Test
+    public void testAsyncProxyCall_shouldCompleteWithResult() throws Exception {
+        start(createConfiguration(), createConfiguration());
+        register(connectorSide, "echo", new EchoConnector("echo"));
+        AsyncEchoService service =
+            createFactory(callerSide).getAsyncRemoteProxy(AsyncEchoService.class, EchoService.class, "echo");
+        ListenableFuture<String> first = service.echo("a");
+        ListenableFuture<String> second = service.echo("b");
+        assertThat(first.get(10, TimeUnit.SECONDS), equalTo("echo:a"));
+        assertThat(second.get(10, TimeUnit.SECONDS), equalTo("echo:b"));
+    }
+
+    @Test
+    public void testAsyncProxyCallToFailingMethod_shouldCompleteWithRemoteException() throws Exception {
+        start(createConfiguration(), createConfiguration());
+        register(connectorSide, "echo", new EchoConnector("echo"));
+        AsyncEchoService service =
+            createFactory(callerSide).getAsyncRemoteProxy(AsyncEchoService.class, EchoService.class, "echo");
+        try {
+            service.fail("a").get(10, TimeUnit.SECONDS);
+            fail("expected the call to fail");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(RemoteException.class));
+        }
+    }
+
+    @Test
+    public void testAsyncProxyCallWithoutReply_shouldTimeOut() throws Exception {
+        JmsConfiguration callerConfiguration = createConfiguration();
+        callerConfiguration.setCallTimeout(500);
+        start(createConfiguration(), callerConfiguration);
+        AsyncEchoService service =
+            createFactory(callerSide).getAsyncRemoteProxy(AsyncEchoService.class, EchoService.class, "nobody");
+        try {
+            service.echo("a").get(10, TimeUnit.SECONDS);
+            fail("expected the call to time out");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        }
+    }
+
+    @Test
+    public void testOneWayCall_shouldNeitherWaitForTheConnectorNorGetAReply() throws Exception {
+        start(createConfiguration(), createConfiguration());
+        BlockingPublisher publisher = new BlockingPublisher();
+        register(connectorSide, "publisher", publisher);
+        createFactory(callerSide).getRemoteProxy(PublishService.class, "publisher").publish("a");
+        assertThat(callerSide.getPendingCallCount(), equalTo(0));
+        Message call = forwardedCalls.poll(10, TimeUnit.SECONDS);
+        assertThat(call.getJMSReplyTo(), nullValue());
+        publisher.release.countDown();
+        assertThat(publisher.published.poll(10, TimeUnit.SECONDS), equalTo("a"));
+        JsonNode callId = objectMapper.readTree(getBody(call)).path("callId");
+        if (callId.isTextual()) {
+            Session session = forwarderConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            MessageConsumer replies = session.createConsumer(session.createQueue(callId.textValue()));
+            assertThat(replies.receive(500), nullValue());
+        }
+    }
+
+    private void start(JmsConfiguration configuration) throws Exception {
+        start(configuration, configuration);
+        connectorSide.registerRequestHandler(new LocalRequestHandler(new ExampleConnector()), CONNECTOR_ID);
+    }
+
+    private void start(JmsConfiguration connectorConfiguration, JmsConfiguration callerConfiguration)
+        throws Exception {
+        connectorSide = new JmsProtocolHandler(BROKER_URL, "connector-side", connectorConfiguration);
+        callerSide = new JmsProtocolHandler(BROKER_URL, "caller-side", callerConfiguration);
+    }
+
+    /*
+     * registers the connector and tells the forwarder which queue its calls go to
+     */
+    private String register(JmsProtocolHandler protocolHandler, String connectorId, Object connector) {
+        String destination = protocolHandler.registerRequestHandler(new LocalRequestHandler(connector), connectorId);
+        connectorQueues.put(connectorId, destination.substring(destination.lastIndexOf('?') + 1));
+        return destination;
+    }
+
+    private static int getBrokerClientCount() throws Exception {
+        return BrokerRegistry.getInstance().lookup("loom-jms-test").getBroker().getClients().length;
+    }
+
+    private static JmsConfiguration createConfiguration() {
+        JmsConfiguration configuration = new JmsConfiguration();
+        configuration.setCallTimeout(10000);
+        return configuration;
+    }
+
+    private static ProxyConnectorFactory createFactory(JmsProtocolHandler protocolHandler) {
+        return new ProxyConnectorFactory(protocolHandler, "admin", new Password("password"));
+    }
+
+    private String findConnectorQueue(Message message) throws Exception {
+        JsonNode body = objectMapper.readTree(getBody(message));
+        if (body.isArray()) {
+            body = body.get(0);
+        }
+        Matcher matcher = SERVICE_PID.matcher(body.path("methodCall").path("metaData").path("serviceFilter").asText());
+        if (!matcher.find()) {
+            return CONNECTOR_ID;
+        }
+        String connectorId = matcher.group(1);
+        String queue = connectorQueues.get(connectorId);
+        return queue != null ? queue : connectorId;
+    }
+
+    private static byte[] getBody(Message message) throws JMSException {
+        if (message instanceof TextMessage) {
+            return ((TextMessage) message).getText().getBytes(Charset.forName("UTF-8"));
+        }
+        BytesMessage bytesMessage = (BytesMessage) message;
+        byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(body);
+        return body;
+    }
+
+    private static MethodCallMessage createRequest(String callId, String message) {
+        MethodCall call = new MethodCall();
+        call.setMethodName("doSomethingWithMessage");
+        call.setArgs(new Object[]{ message });
+        call.setClasses(Arrays.asList(String.class.getName()));
+        MethodCallMessage request = new MethodCallMessage(call);
+        request.setCallId(callId);
+        return request;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.loopback;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.openengsb.connector.usernamepassword.Password;
+import org.openengsb.domain.example.ExampleDomain;
+import org.openengsb.domain.example.model.ExampleRequestModel;
+import org.openengsb.loom.java.ExampleConnector;
+import org.openengsb.loom.java.ProxyConnectorFactory;
+import org.openengsb.loom.java.RemoteException;
+
+public class LoopbackProtocolHandlerTest {
+
+    public interface ModelService {
+        ExampleRequestModel echo(ExampleRequestModel model);
+    }
+
+    public static class EchoModelService implements ModelService {
+        @Override
+        public ExampleRequestModel echo(ExampleRequestModel model) {
+            return model;
+        }
+    }
+
+    @Test
+    public void testCallRegisteredConnector_shouldBeDispatchedLocally() throws Exception {
+        ProxyConnectorFactory factory = createFactory(new LoopbackProtocolHandler());
+        String uuid = factory.createConnector("example");
+        factory.registerConnector(uuid, new ExampleConnector());
+        ExampleDomain proxy = factory.getRemoteProxy(ExampleDomain.class, uuid);
+        assertThat(proxy.doSomethingWithMessage("foo"), equalTo("42"));
+        assertThat(proxy.doSomethingWithModel(createModel()).getResult(), equalTo("foo"));
+    }
+
+    @Test
+    public void testCallDeletedConnector_shouldFail() throws Exception {
+        ProxyConnectorFactory factory = createFactory(new LoopbackProtocolHandler());
+        String uuid = factory.createConnector("example");
+        factory.registerConnector(uuid, new ExampleConnector());
+        factory.deleteConnector(uuid);
+        try {
+            factory.getRemoteProxy(ExampleDomain.class, uuid).doSomethingWithMessage("foo");
+            fail("expected the call to fail");
+        } catch (RemoteException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCallWithoutCopies_shouldPassObjectsAsTheyAre() throws Exception {
+        LoopbackProtocolHandler protocolHandler = new LoopbackProtocolHandler();
+        protocolHandler.registerService(ModelService.class, new EchoModelService());
+        ModelService proxy = createFactory(protocolHandler).getRemoteProxy(ModelService.class);
+        ExampleRequestModel model = createModel();
+        assertThat(proxy.echo(model), sameInstance(model));
+    }
+
+    @Test
+    public void testCallWithCopies_shouldPassEqualCopies() throws Exception {
+        LoopbackProtocolHandler protocolHandler = new LoopbackProtocolHandler(true);
+        protocolHandler.registerService(ModelService.class, new EchoModelService());
+        ModelService proxy = createFactory(protocolHandler).getRemoteProxy(ModelService.class);
+        ExampleRequestModel model = createModel();
+        ExampleRequestModel result = proxy.echo(model);
+        assertThat(result, not(sameInstance(model)));
+        assertThat(result.getName(), equalTo("foo"));
+    }
+
+    private static ProxyConnectorFactory createFactory(LoopbackProtocolHandler protocolHandler) {
+        return new ProxyConnectorFactory(protocolHandler, "admin", new Password("password"));
+    }
+
+    private static ExampleRequestModel createModel() {
+        ExampleRequestModel model = new ExampleRequestModel();
+        model.setName("foo");
+        return model;
+    }
+}
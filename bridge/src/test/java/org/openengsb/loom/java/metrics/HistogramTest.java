@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.metrics;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void testEmptyHistogram_shouldReportZero() throws Exception {
+        HistogramSnapshot snapshot = new Histogram().getSnapshot();
+        assertThat(snapshot.getCount(), equalTo(0L));
+        assertThat(snapshot.getP99(), equalTo(0L));
+    }
+
+    @Test
+    public void testSmallValues_shouldBeExact() throws Exception {
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < 8; i++) {
+            histogram.record(i);
+        }
+        assertThat(histogram.getPercentile(0.5), equalTo(3L));
+        assertThat(histogram.getSnapshot().getMax(), equalTo(7L));
+    }
+
+    @Test
+    public void testPercentiles_shouldBeWithinBucketPrecision() throws Exception {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        HistogramSnapshot snapshot = histogram.getSnapshot();
+        assertThat(snapshot.getCount(), equalTo(1000L));
+        assertThat(snapshot.getP50(), greaterThanOrEqualTo(500000L));
+        assertThat(snapshot.getP50(), lessThanOrEqualTo(562500L));
+        assertThat(snapshot.getP99(), greaterThanOrEqualTo(990000L));
+        assertThat(snapshot.getP999(), equalTo(1000000L));
+    }
+}
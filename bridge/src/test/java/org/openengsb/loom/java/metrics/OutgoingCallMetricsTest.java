@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.metrics;
+
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class OutgoingCallMetricsTest {
+
+    @Test
+    public void testStartedCall_shouldBeCurrentUntilSent() throws Exception {
+        OutgoingCallMetrics metrics = new OutgoingCallMetrics("echo");
+        long startTime = metrics.start();
+        assertThat(OutgoingCallMetrics.current(), sameInstance(metrics));
+        metrics.sent();
+        assertThat(OutgoingCallMetrics.current(), nullValue());
+        metrics.finish(startTime, false);
+    }
+
+    @Test
+    public void testNestedCall_shouldRestoreTheOuterCallWhenSent() throws Exception {
+        OutgoingCallMetrics outer = new OutgoingCallMetrics("echo");
+        OutgoingCallMetrics inner = new OutgoingCallMetrics("openSession");
+        long outerStart = outer.start();
+        long innerStart = inner.start();
+        assertThat(OutgoingCallMetrics.current(), sameInstance(inner));
+        inner.sent();
+        inner.finish(innerStart, false);
+        assertThat(OutgoingCallMetrics.current(), sameInstance(outer));
+        outer.sent();
+        outer.finish(outerStart, false);
+        assertThat(OutgoingCallMetrics.current(), nullValue());
+    }
+}
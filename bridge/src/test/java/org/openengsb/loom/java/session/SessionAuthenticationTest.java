@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.session;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openengsb.connector.usernamepassword.Password;
+import org.openengsb.core.api.model.BeanDescription;
+import org.openengsb.core.api.remote.MethodCall;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.core.api.remote.MethodResult.ReturnType;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.loom.java.ProxyConnectorFactory;
+import org.openengsb.loom.java.StubProtocolHandler;
+
+public class SessionAuthenticationTest {
+
+    public interface EchoService {
+        String echo(String message);
+    }
+
+    /**
+     * stands in for the remote side: hands out tokens for password credentials and accepts other calls only with a
+     * known, unexpired token
+     */
+    private static class SessionServer extends StubProtocolHandler {
+        private final Map<String, Long> tokens = new ConcurrentHashMap<String, Long>();
+        private final List<String> acceptedCredentials = new ArrayList<String>();
+        private long tokenLifetime = 60000;
+        private int sessionsOpened;
+
+        @Override
+        public synchronized MethodResultMessage process(MethodCallMessage request) {
+            MethodCall call = request.getMethodCall();
+            BeanDescription credentials = request.getCredentials();
+            if ("openSession".equals(call.getMethodName())) {
+                if (!Password.class.getName().equals(credentials.getClassName())) {
+                    return reject(request);
+                }
+                String token = "token-" + ++sessionsOpened;
+                long expiresAt = System.currentTimeMillis() + tokenLifetime;
+                tokens.put(token, expiresAt);
+                return answer(request, new SessionTicket(token, expiresAt));
+            }
+            if (!SessionToken.class.getName().equals(credentials.getClassName())) {
+                return reject(request);
+            }
+            String token = credentials.getData().get("token");
+            Long expiresAt = tokens.get(token);
+            if (expiresAt == null || expiresAt < System.currentTimeMillis()) {
+                return reject(request);
+            }
+            acceptedCredentials.add(token);
+            return answer(request, call.getArgs()[0]);
+        }
+
+        private MethodResultMessage reject(MethodCallMessage request) {
+            MethodResult result = new MethodResult("invalid credentials", ReturnType.Exception);
+            result.setClassName("org.openengsb.core.api.security.AuthenticationException");
+            return new MethodResultMessage(result, request.getCallId());
+        }
+    }
+
+    private SessionServer server;
+    private ProxyConnectorFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new SessionServer();
+        factory = new ProxyConnectorFactory(server, "admin", new Password("password"));
+        factory.enableSessionAuthentication();
+    }
+
+    @Test
+    public void testSeveralCalls_shouldAuthenticateOnce() throws Exception {
+        EchoService service = factory.getRemoteProxy(EchoService.class);
+        assertThat(service.echo("a"), equalTo("a"));
+        assertThat(service.echo("b"), equalTo("b"));
+        assertThat(server.sessionsOpened, equalTo(1));
+        assertThat(server.acceptedCredentials.size(), equalTo(2));
+    }
+
+    @Test
+    public void testRevokedToken_shouldReauthenticateAndRepeatCall() throws Exception {
+        EchoService service = factory.getRemoteProxy(EchoService.class);
+        service.echo("a");
+        server.tokens.clear();
+        assertThat(service.echo("b"), equalTo("b"));
+        assertThat(server.sessionsOpened, equalTo(2));
+        assertThat(server.acceptedCredentials.get(1), equalTo("token-2"));
+    }
+
+    @Test
+    public void testExpiringToken_shouldBeRenewedBeforeCall() throws Exception {
+        server.tokenLifetime = 1000;
+        EchoService service = factory.getRemoteProxy(EchoService.class);
+        service.echo("a");
+        service.echo("b");
+        assertThat(server.sessionsOpened, equalTo(2));
+    }
+}
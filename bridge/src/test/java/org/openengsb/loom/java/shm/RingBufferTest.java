@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.shm;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RingBufferTest {
+
+    private ByteBuffer memory;
+    private RingBuffer producer;
+    private RingBuffer consumer;
+
+    @Before
+    public void setUp() throws Exception {
+        memory = ByteBuffer.allocateDirect(RingBuffer.HEADER_SIZE + 256);
+        producer = new RingBuffer(memory);
+        consumer = new RingBuffer(memory);
+    }
+
+    @Test
+    public void testPollEmptyRing_shouldReturnNull() throws Exception {
+        assertThat(consumer.poll(), nullValue());
+    }
+
+    @Test
+    public void testOfferAndPoll_shouldReturnRecord() throws Exception {
+        producer.offer(Record.CALL, 42, "connector".getBytes(RingBuffer.UTF8), new byte[]{ 1, 2, 3, 4 }, 3);
+        Record record = consumer.poll();
+        assertThat(record.getType(), equalTo(Record.CALL));
+        assertThat(record.getCorrelationId(), equalTo(42L));
+        assertThat(record.getTarget(), equalTo("connector"));
+        assertThat(record.getPayload(), equalTo(new byte[]{ 1, 2, 3 }));
+        assertThat(consumer.poll(), nullValue());
+    }
+
+    @Test
+    public void testOfferToFullRing_shouldFailUntilConsumed() throws Exception {
+        byte[] payload = new byte[80];
+        assertThat(producer.offer(Record.RESULT, 1, RingBuffer.NO_TARGET, payload, payload.length), equalTo(true));
+        assertThat(producer.offer(Record.RESULT, 2, RingBuffer.NO_TARGET, payload, payload.length), equalTo(true));
+        assertThat(producer.offer(Record.RESULT, 3, RingBuffer.NO_TARGET, payload, payload.length), equalTo(false));
+        consumer.poll();
+        assertThat(producer.offer(Record.RESULT, 3, RingBuffer.NO_TARGET, payload, payload.length), equalTo(true));
+    }
+
+    @Test
+    public void testRecordsAcrossTheEnd_shouldWrapAround() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            byte[] payload = new byte[i % 50];
+            Arrays.fill(payload, (byte) i);
+            producer.offer(Record.RESULT, i, RingBuffer.NO_TARGET, payload, payload.length);
+            Record record = consumer.poll();
+            assertThat(record.getCorrelationId(), equalTo((long) i));
+            assertThat(record.getPayload(), equalTo(payload));
+        }
+    }
+
+    @Test
+    public void testReopenRing_shouldContinueAtStoredPositions() throws Exception {
+        producer.offer(Record.RESULT, 1, RingBuffer.NO_TARGET, new byte[0], 0);
+        consumer.poll();
+        producer.offer(Record.RESULT, 2, RingBuffer.NO_TARGET, new byte[0], 0);
+        assertThat(new RingBuffer(memory).poll().getCorrelationId(), equalTo(2L));
+    }
+}
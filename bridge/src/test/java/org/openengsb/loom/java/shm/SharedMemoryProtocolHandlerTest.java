@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.shm;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openengsb.core.api.remote.MethodCall;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.loom.java.ExampleConnector;
+import org.openengsb.loom.java.LocalRequestHandler;
+import org.openengsb.loom.java.RequestHandler;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class SharedMemoryProtocolHandlerTest {
+
+    private File file;
+    private StandInShmServer server;
+    private SharedMemoryProtocolHandler protocolHandler;
+    private RequestHandler requestHandler;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("loom", ".shm");
+        server = new StandInShmServer(file);
+        SharedMemoryConfiguration configuration = new SharedMemoryConfiguration();
+        configuration.setCallTimeout(1000);
+        protocolHandler = new SharedMemoryProtocolHandler(file, configuration);
+        requestHandler = protocolHandler.createOutgoingRequestHandler();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        protocolHandler.destroy();
+        server.close();
+        file.delete();
+    }
+
+    @Test
+    public void testProcess_shouldReturnResultOfRemoteSide() throws Exception {
+        MethodResultMessage result = requestHandler.process(createRequest("doSomething", "1"));
+        assertThat((String) result.getResult().getArg(), equalTo("doSomething"));
+        assertThat(result.getCallId(), equalTo("1"));
+    }
+
+    @Test
+    public void testManyConcurrentCalls_shouldWrapAroundTheRings() throws Exception {
+        List<ListenableFuture<MethodResultMessage>> results = new ArrayList<ListenableFuture<MethodResultMessage>>();
+        for (int i = 0; i < 2000; i++) {
+            results.add(requestHandler.processAsync(createRequest("echo", Integer.toString(i), "arg" + i)));
+        }
+        List<MethodResultMessage> resultMessages = Futures.allAsList(results).get(10, TimeUnit.SECONDS);
+        for (int i = 0; i < 2000; i++) {
+            assertThat(resultMessages.get(i).getCallId(), equalTo(Integer.toString(i)));
+            assertThat((String) resultMessages.get(i).getResult().getArg(), equalTo("arg" + i));
+        }
+    }
+
+    @Test
+    public void testCallLargerThanRing_shouldFail() throws Exception {
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'x');
+        try {
+            requestHandler.process(createRequest("echo", "1", new String(chars)));
+            fail("expected the call to fail");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testOneWayCall_shouldNotWaitForResult() throws Exception {
+        MethodCallMessage request = createRequest("doSomething", "1");
+        request.setAnswer(false);
+        requestHandler.processAsync(request).get(1, TimeUnit.SECONDS);
+        requestHandler.process(createRequest("doSomething", "2"));
+        assertThat(server.getOneWayCalls(), equalTo(1));
+    }
+
+    @Test
+    public void testIncomingCall_shouldBeDispatchedToRegisteredConnector() throws Exception {
+        protocolHandler.registerRequestHandler(new LocalRequestHandler(new ExampleConnector()), "example");
+        MethodCall call = new MethodCall();
+        call.setMethodName("doSomethingWithMessage");
+        call.setArgs(new Object[]{ "foo" });
+        call.setClasses(Arrays.asList(String.class.getName()));
+        MethodCallMessage request = new MethodCallMessage(call);
+        request.setCallId("incoming");
+        MethodResultMessage result = server.callConnector("example", request);
+        assertThat((String) result.getResult().getArg(), equalTo("42"));
+        assertThat(result.getCallId(), equalTo("incoming"));
+    }
+
+    @Test
+    public void testUnansweredCall_shouldTimeOut() throws Exception {
+        try {
+            requestHandler.processAsync(createRequest("hang", "1")).get(10, TimeUnit.SECONDS);
+            fail("expected the call to time out");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        }
+    }
+
+    private static MethodCallMessage createRequest(String methodName, String callId, Object... args) {
+        MethodCall call = new MethodCall();
+        call.setMethodName(methodName);
+        call.setArgs(args);
+        MethodCallMessage request = new MethodCallMessage(call);
+        request.setCallId(callId);
+        return request;
+    }
+}
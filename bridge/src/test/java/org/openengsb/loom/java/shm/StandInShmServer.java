@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.shm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.core.api.remote.MethodResult.ReturnType;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.loom.java.codec.JsonCodec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * stand-in for the remote side of a {@link SharedMemoryProtocolHandler}, mapping the same file from the other
+ * end. Calls named "echo" return their first argument, calls named "hang" are never answered, all other calls
+ * return their method name. The server can also call connectors registered on the client side.
+ */
+class StandInShmServer {
+
+    private final ObjectMapper objectMapper = new JsonCodec().getObjectMapper();
+    private final SharedMemoryFile sharedMemory;
+    private final RingBuffer incoming;
+    private final RingBuffer outgoing;
+    private final AtomicInteger oneWayCalls = new AtomicInteger();
+    private final BlockingQueue<MethodResultMessage> connectorResults = new ArrayBlockingQueue<MethodResultMessage>(16);
+    private volatile boolean closed;
+
+    StandInShmServer(File file) throws IOException {
+        sharedMemory = new SharedMemoryFile(file, 64 * 1024);
+        incoming = sharedMemory.getRing(SharedMemoryFile.CLIENT_TO_SERVER);
+        outgoing = sharedMemory.getRing(SharedMemoryFile.SERVER_TO_CLIENT);
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    int getOneWayCalls() {
+        return oneWayCalls.get();
+    }
+
+    /**
+     * sends a call to a connector and waits for its result
+     */
+    MethodResultMessage callConnector(String connectorId, MethodCallMessage request) throws Exception {
+        write(Record.CALL, 1, connectorId.getBytes(RingBuffer.UTF8), objectMapper.writeValueAsBytes(request));
+        return connectorResults.poll(10, TimeUnit.SECONDS);
+    }
+
+    void close() throws IOException {
+        closed = true;
+        sharedMemory.close();
+    }
+
+    private void serve() {
+        WaitStrategy waitStrategy = new ParkingWaitStrategy();
+        int idleCount = 0;
+        while (!closed) {
+            Record record = incoming.poll();
+            if (record == null) {
+                waitStrategy.idle(idleCount++);
+                continue;
+            }
+            idleCount = 0;
+            try {
+                handle(record);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private void handle(Record record) throws IOException {
+        if (record.getType() == Record.RESULT) {
+            connectorResults.add(objectMapper.readValue(record.getPayload(), MethodResultMessage.class));
+            return;
+        }
+        if (record.getType() == Record.ONE_WAY_CALL) {
+            oneWayCalls.incrementAndGet();
+            return;
+        }
+        MethodCallMessage request = objectMapper.readValue(record.getPayload(), MethodCallMessage.class);
+        String methodName = request.getMethodCall().getMethodName();
+        if ("hang".equals(methodName)) {
+            return;
+        }
+        Object value = "echo".equals(methodName) ? request.getMethodCall().getArgs()[0] : methodName;
+        MethodResult result = new MethodResult(value, ReturnType.Object);
+        result.setClassName(String.class.getName());
+        byte[] payload = objectMapper.writeValueAsBytes(new MethodResultMessage(result, request.getCallId()));
+        write(Record.RESULT, record.getCorrelationId(), RingBuffer.NO_TARGET, payload);
+    }
+
+    private synchronized void write(byte type, long correlationId, byte[] target, byte[] payload) {
+        while (!outgoing.offer(type, correlationId, target, payload, payload.length)) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.tcp;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResult;
+import org.openengsb.core.api.remote.MethodResult.ReturnType;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.loom.java.codec.JsonCodec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * blocking stand-in for the remote side of a {@link TcpProtocolHandler}. Calls named "echo" return their first
+ * argument, calls named "hang" are never answered, all other calls return their method name. The server can also
+ * call connectors registered on the client side.
+ */
+class StandInTcpServer {
+
+    private final ObjectMapper objectMapper = new JsonCodec().getObjectMapper();
+    private final ServerSocket serverSocket;
+    private final List<Socket> sockets = new CopyOnWriteArrayList<Socket>();
+    private final AtomicInteger oneWayCalls = new AtomicInteger();
+    private final BlockingQueue<MethodResultMessage> connectorResults = new ArrayBlockingQueue<MethodResultMessage>(16);
+
+    StandInTcpServer() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final Socket socket = serverSocket.accept();
+                        sockets.add(socket);
+                        Thread reader = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+                        reader.setDaemon(true);
+                        reader.start();
+                    }
+                } catch (IOException e) {
+                    // server socket closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    int getOneWayCalls() {
+        return oneWayCalls.get();
+    }
+
+    int getConnectionCount() {
+        return sockets.size();
+    }
+
+    /**
+     * sends a call to a connector over the most recent connection and waits for its result
+     */
+    MethodResultMessage callConnector(String connectorId, MethodCallMessage request) throws Exception {
+        Socket socket = sockets.get(sockets.size() - 1);
+        write(socket, Frame.CALL, 1, connectorId.getBytes(Frame.UTF8), objectMapper.writeValueAsBytes(request));
+        return connectorResults.poll(10, TimeUnit.SECONDS);
+    }
+
+    void closeConnections() throws IOException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        sockets.clear();
+    }
+
+    void close() throws IOException {
+        serverSocket.close();
+        closeConnections();
+    }
+
+    private void serve(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            while (true) {
+                byte[] frame = new byte[in.readInt()];
+                in.readFully(frame);
+                ByteBuffer buffer = ByteBuffer.allocate(frame.length + 4);
+                buffer.putInt(frame.length).put(frame).flip();
+                handle(socket, Frame.read(buffer, Integer.MAX_VALUE));
+            }
+        } catch (IOException e) {
+            // connection closed
+        }
+    }
+
+    private void handle(Socket socket, Frame frame) throws IOException {
+        if (frame.getType() == Frame.RESULT) {
+            connectorResults.add(objectMapper.readValue(frame.getPayload(), MethodResultMessage.class));
+            return;
+        }
+        if (frame.getType() == Frame.ONE_WAY_CALL) {
+            oneWayCalls.incrementAndGet();
+            return;
+        }
+        MethodCallMessage request = objectMapper.readValue(frame.getPayload(), MethodCallMessage.class);
+        String methodName = request.getMethodCall().getMethodName();
+        if ("hang".equals(methodName)) {
+            return;
+        }
+        Object value = "echo".equals(methodName) ? request.getMethodCall().getArgs()[0] : methodName;
+        MethodResult result = new MethodResult(value, ReturnType.Object);
+        result.setClassName(String.class.getName());
+        byte[] payload = objectMapper.writeValueAsBytes(new MethodResultMessage(result, request.getCallId()));
+        write(socket, Frame.RESULT, frame.getCorrelationId(), Frame.NO_TARGET, payload);
+    }
+
+    private static void write(Socket socket, byte type, long correlationId, byte[] target, byte[] payload)
+        throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(Frame.getFrameSize(target, payload.length));
+        Frame.write(frame, type, correlationId, target, payload, payload.length);
+        OutputStream out = socket.getOutputStream();
+        synchronized (socket) {
+            out.write(frame.array());
+            out.flush();
+        }
+    }
+}
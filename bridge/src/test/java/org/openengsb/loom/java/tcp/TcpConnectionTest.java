@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.tcp;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openengsb.core.api.remote.MethodCall;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.loom.java.codec.JsonCodec;
+import org.openengsb.loom.java.util.DirectBufferPool;
+
+public class TcpConnectionTest {
+
+    /**
+     * collects the received frames and close causes; fails on frames while failFrames is set
+     */
+    private static class RecordingListener implements TcpConnection.Listener {
+        private final BlockingQueue<Frame> frames = new ArrayBlockingQueue<Frame>(16);
+        private final BlockingQueue<IOException> closeCauses = new ArrayBlockingQueue<IOException>(16);
+        private volatile boolean failFrames;
+
+        @Override
+        public void frameReceived(TcpConnection connection, Frame frame) {
+            if (failFrames) {
+                throw new IllegalStateException("listener failed");
+            }
+            frames.add(frame);
+        }
+
+        @Override
+        public void connectionClosed(TcpConnection connection, IOException cause) {
+            closeCauses.add(cause);
+        }
+    }
+
+    private StandInTcpServer server;
+    private IoLoop ioLoop;
+    private DirectBufferPool bufferPool;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInTcpServer();
+        ioLoop = new IoLoop("loom-tcp-io-test");
+        bufferPool = new DirectBufferPool(1024, 4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ioLoop.close();
+        server.close();
+    }
+
+    @Test
+    public void testWriteBeforeRegistration_shouldBeSentOnceRegistered() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        TcpConnection connection = createConnection(listener);
+        connection.write(createCall(1));
+        Thread.sleep(100);
+        ioLoop.register(connection);
+        Frame reply = listener.frames.poll(10, TimeUnit.SECONDS);
+        assertThat(reply, notNullValue());
+        assertThat(reply.getCorrelationId(), equalTo(1L));
+    }
+
+    @Test
+    public void testWriteRightAfterConnect_shouldBeSent() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        TcpConnection connection = createConnection(listener);
+        ioLoop.register(connection);
+        connection.write(createCall(1));
+        Frame reply = listener.frames.poll(10, TimeUnit.SECONDS);
+        assertThat(reply.getCorrelationId(), equalTo(1L));
+    }
+
+    @Test
+    public void testFailingConnection_shouldBeClosedWithoutStoppingTheLoop() throws Exception {
+        RecordingListener failing = new RecordingListener();
+        failing.failFrames = true;
+        TcpConnection failingConnection = createConnection(failing);
+        ioLoop.register(failingConnection);
+        failingConnection.write(createCall(1));
+        assertThat(failing.closeCauses.poll(10, TimeUnit.SECONDS), instanceOf(IOException.class));
+        RecordingListener listener = new RecordingListener();
+        TcpConnection connection = createConnection(listener);
+        ioLoop.register(connection);
+        connection.write(createCall(2));
+        assertThat(listener.frames.poll(10, TimeUnit.SECONDS).getCorrelationId(), equalTo(2L));
+    }
+
+    private TcpConnection createConnection(TcpConnection.Listener listener) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getPort()));
+        channel.configureBlocking(false);
+        return new TcpConnection(channel, ioLoop, bufferPool, Integer.MAX_VALUE, listener);
+    }
+
+    private static ByteBuffer createCall(long correlationId) throws IOException {
+        MethodCall call = new MethodCall();
+        call.setMethodName("doSomething");
+        call.setArgs(new Object[0]);
+        MethodCallMessage request = new MethodCallMessage(call);
+        byte[] payload = new JsonCodec().getObjectMapper().writeValueAsBytes(request);
+        ByteBuffer frame = ByteBuffer.allocate(Frame.getFrameSize(Frame.NO_TARGET, payload.length));
+        Frame.write(frame, Frame.CALL, correlationId, Frame.NO_TARGET, payload, payload.length);
+        frame.flip();
+        return frame;
+    }
+}
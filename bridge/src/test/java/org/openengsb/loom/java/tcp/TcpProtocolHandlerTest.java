@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.tcp;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openengsb.core.api.remote.MethodCall;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.loom.java.ExampleConnector;
+import org.openengsb.loom.java.LocalRequestHandler;
+import org.openengsb.loom.java.RequestHandler;
+import org.openengsb.loom.java.metrics.BridgeMetrics;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class TcpProtocolHandlerTest {
+
+    private StandInTcpServer server;
+    private TcpProtocolHandler protocolHandler;
+    private RequestHandler requestHandler;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInTcpServer();
+        TcpConfiguration configuration = new TcpConfiguration();
+        configuration.setBufferSize(1024);
+        protocolHandler = new TcpProtocolHandler("127.0.0.1", server.getPort(), configuration);
+        requestHandler = protocolHandler.createOutgoingRequestHandler();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        protocolHandler.destroy();
+        server.close();
+    }
+
+    @Test
+    public void testProcess_shouldReturnResultOfRemoteSide() throws Exception {
+        MethodResultMessage result = requestHandler.process(createRequest("doSomething", "1"));
+        assertThat((String) result.getResult().getArg(), equalTo("doSomething"));
+        assertThat(result.getCallId(), equalTo("1"));
+    }
+
+    @Test
+    public void testConcurrentCalls_shouldBeMultiplexedOverTheConnections() throws Exception {
+        List<ListenableFuture<MethodResultMessage>> results = new ArrayList<ListenableFuture<MethodResultMessage>>();
+        for (int i = 0; i < 200; i++) {
+            results.add(requestHandler.processAsync(createRequest("echo", Integer.toString(i), "arg" + i)));
+        }
+        List<MethodResultMessage> resultMessages = Futures.allAsList(results).get(10, TimeUnit.SECONDS);
+        for (int i = 0; i < 200; i++) {
+            assertThat(resultMessages.get(i).getCallId(), equalTo(Integer.toString(i)));
+            assertThat((String) resultMessages.get(i).getResult().getArg(), equalTo("arg" + i));
+        }
+        assertThat(server.getConnectionCount(), equalTo(2));
+    }
+
+    @Test
+    public void testCallLargerThanBuffer_shouldBeTransferred() throws Exception {
+        char[] chars = new char[100000];
+        Arrays.fill(chars, 'x');
+        String largeArgument = new String(chars);
+        MethodResultMessage result = requestHandler.process(createRequest("echo", "1", largeArgument));
+        assertThat((String) result.getResult().getArg(), equalTo(largeArgument));
+    }
+
+    @Test
+    public void testOneWayCall_shouldNotWaitForResult() throws Exception {
+        MethodCallMessage request = createRequest("doSomething", "1");
+        request.setAnswer(false);
+        requestHandler.processAsync(request).get(1, TimeUnit.SECONDS);
+        requestHandler.process(createRequest("doSomething", "2"));
+        assertThat(server.getOneWayCalls(), equalTo(1));
+    }
+
+    @Test
+    public void testIncomingCall_shouldBeDispatchedToRegisteredConnector() throws Exception {
+        protocolHandler.registerRequestHandler(new LocalRequestHandler(new ExampleConnector()), "example");
+        MethodCall call = new MethodCall();
+        call.setMethodName("doSomethingWithMessage");
+        call.setArgs(new Object[]{ "foo" });
+        call.setClasses(Arrays.asList(String.class.getName()));
+        MethodCallMessage request = new MethodCallMessage(call);
+        request.setCallId("incoming");
+        MethodResultMessage result = server.callConnector("example", request);
+        assertThat((String) result.getResult().getArg(), equalTo("42"));
+        assertThat(result.getCallId(), equalTo("incoming"));
+    }
+
+    @Test
+    public void testUnregisterConnector_shouldDropItsMetrics() throws Exception {
+        protocolHandler.registerRequestHandler(new LocalRequestHandler(new ExampleConnector()), "unregistered");
+        assertThat(BridgeMetrics.getDefault().getIncomingCalls().containsKey("unregistered"), is(true));
+        protocolHandler.unregisterRequestHandler("unregistered");
+        assertThat(BridgeMetrics.getDefault().getIncomingCalls().containsKey("unregistered"), is(false));
+    }
+
+    @Test
+    public void testConnectionLost_shouldFailPendingCallsAndReconnect() throws Exception {
+        ListenableFuture<MethodResultMessage> first = requestHandler.processAsync(createRequest("hang", "1"));
+        ListenableFuture<MethodResultMessage> second = requestHandler.processAsync(createRequest("hang", "2"));
+        server.closeConnections();
+        for (ListenableFuture<MethodResultMessage> future : Arrays.asList(first, second)) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail("expected the call to fail");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(IOException.class));
+            }
+        }
+        MethodResultMessage result = requestHandler.process(createRequest("doSomething", "3"));
+        assertThat((String) result.getResult().getArg(), equalTo("doSomething"));
+    }
+
+    private static MethodCallMessage createRequest(String methodName, String callId, Object... args) {
+        MethodCall call = new MethodCall();
+        call.setMethodName(methodName);
+        call.setArgs(args);
+        MethodCallMessage request = new MethodCallMessage(call);
+        request.setCallId(callId);
+        return request;
+    }
+}
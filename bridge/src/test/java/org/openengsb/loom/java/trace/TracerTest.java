@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.trace;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+public class TracerTest {
+
+    private static class CountingPayload {
+        private int rendered;
+
+        @Override
+        public String toString() {
+            rendered++;
+            return "payload";
+        }
+    }
+
+    @Test
+    public void testTraceWithIntervalOne_shouldRecordEveryCall() throws Exception {
+        Tracer tracer = new Tracer(16, 1);
+        tracer.trace("1", TracePoint.SEND, "request");
+        tracer.trace("1", TracePoint.REPLY_RECEIVED);
+        List<TraceEvent> events = tracer.getEvents();
+        assertThat(events.size(), equalTo(2));
+        assertThat(events.get(0).getPoint(), equalTo(TracePoint.SEND));
+        assertThat(events.get(0).getDetail(), equalTo("request"));
+        assertThat(events.get(1).getCallId(), equalTo("1"));
+    }
+
+    @Test
+    public void testTraceDisabled_shouldNotRenderPayload() throws Exception {
+        Tracer tracer = new Tracer(16, 0);
+        CountingPayload payload = new CountingPayload();
+        tracer.trace("1", TracePoint.SEND, payload);
+        assertThat(payload.rendered, equalTo(0));
+        assertThat(tracer.getEvents().size(), equalTo(0));
+    }
+
+    @Test
+    public void testTraceWithInterval_shouldKeepAllEventsOfSampledCalls() throws Exception {
+        Tracer tracer = new Tracer(1024, 10);
+        int sampled = 0;
+        for (int i = 0; i < 100; i++) {
+            String callId = Integer.toString(i);
+            tracer.trace(callId, TracePoint.SEND);
+            tracer.trace(callId, TracePoint.REPLY_RECEIVED);
+            if (tracer.isSampled(callId)) {
+                sampled++;
+            }
+        }
+        assertThat(tracer.getEvents().size(), equalTo(2 * sampled));
+    }
+
+    @Test
+    public void testTraceWithoutPayloadRendering_shouldRecordEventOnly() throws Exception {
+        Tracer tracer = new Tracer(16, 1);
+        tracer.setRenderPayloads(false);
+        CountingPayload payload = new CountingPayload();
+        tracer.trace("1", TracePoint.DISPATCHED, payload);
+        assertThat(payload.rendered, equalTo(0));
+        assertThat(tracer.getEvents().get(0).getDetail(), nullValue());
+    }
+
+    @Test
+    public void testTraceMoreThanCapacity_shouldKeepNewestEvents() throws Exception {
+        Tracer tracer = new Tracer(4, 1);
+        for (int i = 0; i < 10; i++) {
+            tracer.trace(Integer.toString(i), TracePoint.SEND);
+        }
+        List<TraceEvent> events = tracer.getEvents();
+        assertThat(events.size(), equalTo(4));
+        assertThat(events.get(0).getCallId(), equalTo("6"));
+        assertThat(events.get(3).getCallId(), equalTo("9"));
+        assertThat(tracer.dump().length, equalTo(4));
+    }
+}
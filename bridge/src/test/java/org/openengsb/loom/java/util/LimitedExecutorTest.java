@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.util;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LimitedExecutorTest {
+
+    /**
+     * collects the tasks instead of running them, or rejects them while rejecting is set
+     */
+    private static class ManualExecutor implements Executor {
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+        private boolean rejecting;
+
+        @Override
+        public void execute(Runnable command) {
+            if (rejecting) {
+                throw new RejectedExecutionException();
+            }
+            tasks.add(command);
+        }
+
+        void runNext() {
+            tasks.remove(0).run();
+        }
+    }
+
+    private static class NamedTask implements Runnable {
+        private final String name;
+        private final List<String> log;
+
+        NamedTask(String name, List<String> log) {
+            this.name = name;
+            this.log = log;
+        }
+
+        @Override
+        public void run() {
+            log.add(name);
+        }
+    }
+
+    private ManualExecutor delegate;
+    private LimitedExecutor executor;
+    private List<String> log;
+
+    @Before
+    public void setUp() throws Exception {
+        delegate = new ManualExecutor();
+        executor = new LimitedExecutor(delegate, 1);
+        log = new ArrayList<String>();
+    }
+
+    @Test
+    public void testExecuteBeyondLimit_shouldRunTasksOneAfterAnother() throws Exception {
+        executor.execute(new NamedTask("a", log));
+        executor.execute(new NamedTask("b", log));
+        assertThat(delegate.tasks.size(), equalTo(1));
+        delegate.runNext();
+        delegate.runNext();
+        assertThat(log.toString(), equalTo("[a, b]"));
+    }
+
+    @Test
+    public void testRejectedOwnTask_shouldThrowToCaller() throws Exception {
+        delegate.rejecting = true;
+        try {
+            executor.execute(new NamedTask("a", log));
+            fail("expected the task to be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        delegate.rejecting = false;
+        executor.execute(new NamedTask("b", log));
+        delegate.runNext();
+        assertThat(log.toString(), equalTo("[b]"));
+        assertThat(delegate.tasks.size(), equalTo(0));
+    }
+
+    @Test
+    public void testRejectedQueuedTask_shouldBeRetriedFirst() throws Exception {
+        executor.execute(new NamedTask("a", log));
+        executor.execute(new NamedTask("b", log));
+        delegate.rejecting = true;
+        delegate.runNext();
+        delegate.rejecting = false;
+        executor.execute(new NamedTask("c", log));
+        delegate.runNext();
+        delegate.runNext();
+        assertThat(log.toString(), equalTo("[a, b, c]"));
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.util;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PendingCallsTest {
+
+    private PendingCalls<String> pendingCalls;
+
+    @Before
+    public void setUp() throws Exception {
+        pendingCalls = new PendingCalls<String>(2, 1, TimeUnit.HOURS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pendingCalls.close();
+    }
+
+    @Test
+    public void testComplete_shouldCompleteFutureAndRemoveCall() throws Exception {
+        Future<String> future = pendingCalls.register("1", 0, TimeUnit.MILLISECONDS);
+        assertThat(pendingCalls.complete("1", "result"), equalTo(true));
+        assertThat(future.get(), equalTo("result"));
+        assertThat(pendingCalls.size(), equalTo(0));
+    }
+
+    @Test
+    public void testCompleteUnknownCall_shouldBeDropped() throws Exception {
+        assertThat(pendingCalls.complete("unknown", "result"), equalTo(false));
+    }
+
+    @Test
+    public void testRegisterTooManyCalls_shouldBeRejected() throws Exception {
+        pendingCalls.register("1", 0, TimeUnit.MILLISECONDS);
+        pendingCalls.register("2", 0, TimeUnit.MILLISECONDS);
+        try {
+            pendingCalls.register("3", 0, TimeUnit.MILLISECONDS);
+            fail("expected the third call to be rejected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        pendingCalls.complete("1", "result");
+        pendingCalls.register("3", 0, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testSweepExpiredCall_shouldFailWithTimeout() throws Exception {
+        Future<String> future = pendingCalls.register("1", 1, TimeUnit.NANOSECONDS);
+        Thread.sleep(1);
+        pendingCalls.sweep();
+        try {
+            future.get();
+            fail("expected the call to time out");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        }
+        assertThat(pendingCalls.size(), equalTo(0));
+        assertThat(pendingCalls.complete("1", "late"), equalTo(false));
+    }
+
+    @Test
+    public void testSweepCallWithoutTimeout_shouldKeepWaiting() throws Exception {
+        Future<String> future = pendingCalls.register("1", 0, TimeUnit.MILLISECONDS);
+        pendingCalls.sweep();
+        assertThat(future.isDone(), equalTo(false));
+        assertThat(pendingCalls.complete("1", "result"), equalTo(true));
+    }
+
+    @Test
+    public void testSweepCancelledCall_shouldFreeSlot() throws Exception {
+        pendingCalls.register("1", 0, TimeUnit.MILLISECONDS).cancel(false);
+        pendingCalls.register("2", 0, TimeUnit.MILLISECONDS);
+        pendingCalls.sweep();
+        assertThat(pendingCalls.size(), equalTo(1));
+        pendingCalls.register("3", 0, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Licensed to the Austrian Association for Software Tool Integration (AASTI)
+ * under one or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information regarding copyright
+ * ownership. The AASTI licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openengsb.loom.java.util;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.openengsb.core.api.remote.MethodCallMessage;
+import org.openengsb.core.api.remote.MethodResult.ReturnType;
+import org.openengsb.core.api.remote.MethodResultMessage;
+import org.openengsb.domain.example.model.ExampleRequestModel;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+
+public class TypedMessageReaderTest {
+
+    private static final String MODEL = ExampleRequestModel.class.getName();
+
+    private ObjectMapper mapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private ClassLoader classLoader = getClass().getClassLoader();
+
+    @Test
+    public void testReadCallWithArgsBeforeClasses_shouldBindArgsToClasses() throws Exception {
+        String json = "{\"callId\":\"1\",\"methodCall\":{\"methodName\":\"doSomethingWithModel\","
+                + "\"args\":[{\"name\":\"foo\",\"id\":42},null],"
+                + "\"classes\":[\"" + MODEL + "\",\"" + MODEL + "\"]},\"principal\":\"admin\"}";
+        MethodCallMessage message = TypedMessageReader.readMethodCallMessage(mapper, parse(json), classLoader);
+        assertThat(message.getCallId(), equalTo("1"));
+        assertThat(message.getPrincipal(), equalTo("admin"));
+        assertThat(message.getMethodCall().getMethodName(), equalTo("doSomethingWithModel"));
+        Object[] args = message.getMethodCall().getArgs();
+        assertThat(args[0], instanceOf(ExampleRequestModel.class));
+        assertThat(((ExampleRequestModel) args[0]).getName(), equalTo("foo"));
+        assertThat(args[1], nullValue());
+    }
+
+    @Test
+    public void testReadCallWithClassesBeforeArgs_shouldBindArgsToClasses() throws Exception {
+        String json = "{\"methodCall\":{\"classes\":[\"" + MODEL + "\",\"java.lang.String\"],"
+                + "\"args\":[{\"name\":\"foo\"},\"bar\"],\"methodName\":\"doSomething\"}}";
+        MethodCallMessage message = TypedMessageReader.readMethodCallMessage(mapper, parse(json), classLoader);
+        Object[] args = message.getMethodCall().getArgs();
+        assertThat(((ExampleRequestModel) args[0]).getName(), equalTo("foo"));
+        assertThat((String) args[1], equalTo("bar"));
+    }
+
+    @Test
+    public void testReadObjectResult_shouldBindArgToClassName() throws Exception {
+        String json = "{\"result\":{\"arg\":{\"name\":\"foo\"},\"type\":\"Object\",\"className\":\"" + MODEL
+                + "\"},\"callId\":\"2\"}";
+        MethodResultMessage message = TypedMessageReader.readMethodResultMessage(mapper, parse(json), classLoader);
+        assertThat(message.getCallId(), equalTo("2"));
+        assertThat(message.getResult().getType(), equalTo(ReturnType.Object));
+        assertThat(((ExampleRequestModel) message.getResult().getArg()).getName(), equalTo("foo"));
+    }
+
+    @Test
+    public void testReadExceptionResult_shouldKeepStackTrace() throws Exception {
+        String json = "{\"result\":{\"type\":\"Exception\",\"className\":\"java.lang.IllegalStateException\","
+                + "\"arg\":\"stacktrace\"}}";
+        MethodResultMessage message = TypedMessageReader.readMethodResultMessage(mapper, parse(json), classLoader);
+        assertThat(message.getResult().getType(), equalTo(ReturnType.Exception));
+        assertThat((String) message.getResult().getArg(), equalTo("stacktrace"));
+    }
+
+    @Test
+    public void testReadCallWithUnknownField_shouldIgnoreField() throws Exception {
+        String json = "{\"methodCall\":{\"methodName\":\"doSomething\",\"unknown\":{\"a\":[1,2]},"
+                + "\"classes\":[\"java.lang.String\"],\"args\":[\"bar\"]}}";
+        MethodCallMessage message = TypedMessageReader.readMethodCallMessage(mapper, parse(json), classLoader);
+        assertThat(message.getMethodCall().getMethodName(), equalTo("doSomething"));
+        assertThat((String) message.getMethodCall().getArgs()[0], equalTo("bar"));
+    }
+
+    @Test(expected = UnrecognizedPropertyException.class)
+    public void testReadCallWithUnknownFieldWhenStrict_shouldFail() throws Exception {
+        mapper.enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        String json = "{\"methodCall\":{\"methodName\":\"doSomething\",\"unknown\":true}}";
+        TypedMessageReader.readMethodCallMessage(mapper, parse(json), classLoader);
+    }
+
+    private JsonParser parse(String json) throws Exception {
+        return mapper.getFactory().createParser(json);
+    }
+}